@@ -0,0 +1,94 @@
+package org.poltanov.forums.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование событий чата в JSON, как в {@code ChatEventPublisher}, и JSON в CBOR, как в
+ * {@code BinaryFrameEncoding} для сессий {@code /ws-native}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+
+    private ChatMessage chatMessage;
+    private LobbyCreatedMessage lobbyCreated;
+    private UserJoinedMessage userJoined;
+    private PresenceChangedMessage presenceChanged;
+    private byte[] chatMessageJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        // Настройки совпадают с ObjectMapper, который создаёт Spring Boot.
+        json = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        cbor = Jackson2ObjectMapperBuilder.json()
+                .factory(new CBORFactory())
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        chatMessage = new ChatMessage(1_234_567L, "Привет, лобби! Как дела у всех?", 42L, "nickname", 7L,
+                LocalDateTime.of(2024, 11, 7, 17, 28, 2));
+        lobbyCreated = new LobbyCreatedMessage(7L, "Лобби", 42L);
+        userJoined = new UserJoinedMessage(42L, "nickname");
+        presenceChanged = new PresenceChangedMessage(List.of(1L, 2L, 3L), List.of(4L));
+        chatMessageJson = json.writeValueAsBytes(chatMessage);
+    }
+
+    @Benchmark
+    public byte[] chatMessageToJson() throws Exception {
+        return json.writeValueAsBytes(chatMessage);
+    }
+
+    @Benchmark
+    public byte[] lobbyCreatedToJson() throws Exception {
+        return json.writeValueAsBytes(lobbyCreated);
+    }
+
+    @Benchmark
+    public byte[] userJoinedToJson() throws Exception {
+        return json.writeValueAsBytes(userJoined);
+    }
+
+    @Benchmark
+    public byte[] presenceChangedToJson() throws Exception {
+        return json.writeValueAsBytes(presenceChanged);
+    }
+
+    /**
+     * Перекодирование готового JSON сообщения в CBOR через дерево, как при отправке в {@code /ws-native}.
+     */
+    @Benchmark
+    public byte[] chatMessageJsonToCbor() throws Exception {
+        return cbor.writeValueAsBytes(json.readTree(chatMessageJson));
+    }
+
+    @Benchmark
+    public ChatMessage chatMessageFromJson() throws Exception {
+        return json.readValue(chatMessageJson, ChatMessage.class);
+    }
+}
@@ -0,0 +1,57 @@
+package org.poltanov.forums.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование строки таблицы {@code messages} в сообщение {@link MessageService#STORED_MESSAGE_ROW_MAPPER}.
+ * Строка отдаётся заглушкой {@link ResultSet} без драйвера, поэтому замеряется только сам маппер.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageRowMapperBenchmark {
+
+    private ResultSet row;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> columns = Map.of(
+                "id", 1_234_567L,
+                "lobby_id", 7L,
+                "sender_id", 42L,
+                "timestamp", Timestamp.valueOf(LocalDateTime.of(2024, 11, 7, 17, 28, 2)),
+                "body", new byte[64]);
+        row = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLong" -> columns.get((String) args[0]);
+                    case "getTimestamp", "getBytes" -> columns.get((String) args[0]);
+                    case "getString" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Benchmark
+    public MessageService.StoredMessage mapRow() throws SQLException {
+        return MessageService.STORED_MESSAGE_ROW_MAPPER.mapRow(row, 0);
+    }
+}
@@ -0,0 +1,72 @@
+package org.poltanov.forums.util;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск и проверка JWT токенов: {@link JwtUtil} и кэш проверенных токенов {@link VerifiedTokenCache},
+ * через который проходит каждый HTTP-запрос и рукопожатие WebSocket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private VerifiedTokenCache verifiedTokenCache;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        Field secret = ReflectionUtils.findField(JwtUtil.class, "SECRET_KEY");
+        ReflectionUtils.makeAccessible(secret);
+        ReflectionUtils.setField(secret, jwtUtil, "YourSuperSecretKeyThatIsAtLeast32CharactersLong");
+        jwtUtil.init();
+        verifiedTokenCache = new VerifiedTokenCache(jwtUtil, 10_000);
+        userDetails = User.withUsername("user").password("").authorities("USER").build();
+        token = jwtUtil.generateToken(userDetails, 42L, "nickname");
+        verifiedTokenCache.verify(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(userDetails, 42L, "nickname");
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token);
+    }
+
+    @Benchmark
+    public Claims extractClaims() {
+        return jwtUtil.extractClaims(token);
+    }
+
+    /**
+     * Проверка токена, уже находящегося в кэше.
+     */
+    @Benchmark
+    public JwtUserPrincipal verifyCached() {
+        return verifiedTokenCache.verify(token);
+    }
+}
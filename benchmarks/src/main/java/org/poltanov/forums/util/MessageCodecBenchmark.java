@@ -0,0 +1,80 @@
+package org.poltanov.forums.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование и расшифровка текста сообщения: {@link AesGcmMessageCodec} для новых сообщений
+ * и {@link LegacyAesMessageCodec} для сообщений устаревшего формата.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    /**
+     * Длина текста сообщения в символах.
+     */
+    @Param({"32", "512"})
+    public int length;
+
+    private final AesGcmMessageCodec codec = new AesGcmMessageCodec("MySuperSecretKey");
+    private final LegacyAesMessageCodec legacyCodec = new LegacyAesMessageCodec("MySuperSecretKey");
+
+    private String text;
+    private byte[] payload;
+    private String legacyText;
+    private List<byte[]> page;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        text = "Привет, лобби! ".repeat(length / 15 + 1).substring(0, length);
+        payload = codec.encode(text);
+        legacyText = new String(legacyCodec.encode(text), StandardCharsets.US_ASCII);
+        page = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            page.add(codec.encode(text + i));
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() throws GeneralSecurityException {
+        return codec.encode(text);
+    }
+
+    @Benchmark
+    public String decode() throws GeneralSecurityException {
+        return codec.decode(payload);
+    }
+
+    /**
+     * Расшифровка страницы истории из 50 сообщений.
+     */
+    @Benchmark
+    public List<String> decodePage() {
+        return codec.decodeAll(page);
+    }
+
+    @Benchmark
+    public String decodeLegacy() throws GeneralSecurityException {
+        return legacyCodec.decodeText(legacyText);
+    }
+}
@@ -0,0 +1,128 @@
+package org.poltanov.forums.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Вызовы REST API приложения, нужные для подготовки теста: регистрация, вход, создание лобби и вступление в него.
+ */
+class ApiClient {
+
+    private final URI baseUrl;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Конструктор для создания экземпляра {@link ApiClient}.
+     *
+     * @param baseUrl адрес приложения
+     */
+    ApiClient(URI baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Регистрирует пользователя, если его ещё нет, и входит от его имени.
+     *
+     * @param username имя пользователя
+     * @param password пароль
+     * @return JWT токен и ID пользователя
+     * @throws IOException если приложение вернуло ошибку
+     */
+    Login registerAndLogin(String username, String password) throws IOException, InterruptedException {
+        HttpResponse<String> registered = post("/auth/register", null,
+                Map.of("username", username, "password", password, "nickname", username));
+        if (registered.statusCode() != 200 && registered.statusCode() != 400) {
+            throw new IOException("Регистрация " + username + ": HTTP " + registered.statusCode());
+        }
+        HttpResponse<String> login = post("/auth/login", null, Map.of("username", username, "password", password));
+        if (login.statusCode() != 200) {
+            throw new IOException("Вход " + username + ": HTTP " + login.statusCode());
+        }
+        String token = objectMapper.readTree(login.body()).path("jwtToken").asText();
+        String payload = new String(Base64.getUrlDecoder().decode(token.split("\\.")[1]), StandardCharsets.UTF_8);
+        return new Login(token, objectMapper.readTree(payload).path("userId").asLong());
+    }
+
+    /**
+     * Создаёт лобби.
+     *
+     * @param token JWT токен создателя
+     * @param name  название лобби
+     * @return ID лобби
+     * @throws IOException если приложение вернуло ошибку
+     */
+    long createLobby(String token, String name) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/lobby/create", token, Map.of("name", name));
+        if (response.statusCode() != 201) {
+            throw new IOException("Создание лобби: HTTP " + response.statusCode() + " " + response.body());
+        }
+        return objectMapper.readTree(response.body()).path("id").asLong();
+    }
+
+    /**
+     * Вступает в лобби.
+     *
+     * @param token   JWT токен пользователя
+     * @param lobbyId ID лобби
+     * @throws IOException если приложение вернуло ошибку
+     */
+    void joinLobby(String token, long lobbyId) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/lobby/" + lobbyId + "/join", token, null);
+        if (response.statusCode() != 200) {
+            throw new IOException("Вступление в лобби " + lobbyId + ": HTTP " + response.statusCode());
+        }
+    }
+
+    /**
+     * Возвращает метрики приложения в формате Prometheus.
+     *
+     * @param token JWT токен пользователя: конечная точка доступна только после входа
+     * @return текст метрик или {@code null}, если конечная точка недоступна
+     */
+    String prometheus(String token) {
+        try {
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(baseUrl.resolve("/actuator/prometheus"))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Authorization", "Bearer " + token)
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? response.body() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private HttpResponse<String> post(String path, String token, Object body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(body != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body))
+                        : HttpRequest.BodyPublishers.noBody());
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Результат входа.
+     *
+     * @param token  JWT токен
+     * @param userId ID пользователя
+     */
+    record Login(String token, long userId) {
+    }
+}
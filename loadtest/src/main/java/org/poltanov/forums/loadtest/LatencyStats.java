@@ -0,0 +1,86 @@
+package org.poltanov.forums.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Результаты замера: задержка доставки сообщений и счётчики отправленных и доставленных сообщений.
+ * <p>
+ * Задержка — время от вызова отправки кадра {@code SEND} клиентом до получения кадра {@code MESSAGE} подписчиком
+ * того же лобби, в микросекундах. Отправитель и получатель работают в одном процессе, поэтому время берётся из
+ * {@link System#nanoTime()} без синхронизации часов. Запись в гистограмму не блокирует потоки получения.
+ * </p>
+ */
+class LatencyStats {
+
+    private final Recorder latencies = new Recorder(TimeUnit.MINUTES.toMicros(5), 3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+
+    private volatile long windowStart = Long.MAX_VALUE;
+    private volatile long windowEnd = Long.MAX_VALUE;
+
+    /**
+     * Открывает окно замера: учитываются сообщения, отправленные начиная с этого момента.
+     */
+    void startWindow() {
+        latencies.reset();
+        windowStart = System.nanoTime();
+    }
+
+    /**
+     * Закрывает окно замера: сообщения, отправленные после этого момента, не учитываются.
+     * Доставка сообщений, отправленных внутри окна, продолжает учитываться.
+     */
+    void stopWindow() {
+        windowEnd = System.nanoTime();
+    }
+
+    /**
+     * Проверяет, отправлено ли сообщение внутри окна замера.
+     *
+     * @param sentNanos время отправки по {@link System#nanoTime()}
+     * @return {@code true}, если сообщение учитывается
+     */
+    boolean inWindow(long sentNanos) {
+        return sentNanos - windowStart >= 0 && windowEnd - sentNanos > 0;
+    }
+
+    void sent() {
+        sent.increment();
+    }
+
+    void sendFailed() {
+        sendErrors.increment();
+    }
+
+    void delivered(long sentNanos) {
+        delivered.increment();
+        latencies.recordValue(Math.max(0, (System.nanoTime() - sentNanos) / 1000));
+    }
+
+    long getSent() {
+        return sent.sum();
+    }
+
+    long getDelivered() {
+        return delivered.sum();
+    }
+
+    long getSendErrors() {
+        return sendErrors.sum();
+    }
+
+    /**
+     * Возвращает гистограмму задержек, накопленную с предыдущего вызова.
+     *
+     * @return гистограмма в микросекундах
+     */
+    Histogram takeHistogram() {
+        return latencies.getIntervalHistogram();
+    }
+}
@@ -0,0 +1,153 @@
+package org.poltanov.forums.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Один клиент нагрузочного теста: сессия STOMP пользователя, подписанная на сообщения своего лобби.
+ * <p>
+ * Текст отправляемого сообщения начинается с {@code lt:<nanoTime>:}; по этой метке получатель вычисляет задержку
+ * доставки. Учитываются только сообщения, отправленные внутри окна замера {@link LatencyStats}.
+ * </p>
+ */
+class LoadClient extends StompSessionHandlerAdapter implements StompFrameHandler {
+
+    private static final String MARK = "lt:";
+
+    private final ObjectMapper objectMapper;
+    private final LatencyStats stats;
+    private final long userId;
+    private final long lobbyId;
+    private final String padding;
+    private final StompHeaders sendHeaders = new StompHeaders();
+
+    private volatile StompSession session;
+    private volatile Throwable failure;
+
+    /**
+     * Конструктор для создания экземпляра {@link LoadClient}.
+     *
+     * @param objectMapper преобразователь сообщений в JSON
+     * @param stats        результаты замера
+     * @param userId       ID пользователя клиента
+     * @param lobbyId      ID лобби клиента
+     * @param textLength   длина текста сообщения
+     */
+    LoadClient(ObjectMapper objectMapper, LatencyStats stats, long userId, long lobbyId, int textLength) {
+        this.objectMapper = objectMapper;
+        this.stats = stats;
+        this.userId = userId;
+        this.lobbyId = lobbyId;
+        this.padding = "x".repeat(Math.max(0, textLength - 24));
+        sendHeaders.setDestination("/app/chat.sendMessage");
+        sendHeaders.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    /**
+     * Подключается к {@code /ws} без SockJS и подписывается на сообщения лобби.
+     *
+     * @param stompClient клиент STOMP
+     * @param baseUrl     адрес приложения
+     * @param token       JWT токен пользователя
+     * @return результат, завершаемый после подписки
+     */
+    CompletableFuture<StompSession> connect(WebSocketStompClient stompClient, URI baseUrl, String token) {
+        String scheme = "https".equals(baseUrl.getScheme()) ? "wss" : "ws";
+        URI url = URI.create(scheme + "://" + baseUrl.getAuthority() + "/ws/websocket?token=" + token);
+        return stompClient.connectAsync(url, new WebSocketHttpHeaders(), new StompHeaders(), this);
+    }
+
+    boolean isConnected() {
+        StompSession current = session;
+        return current != null && current.isConnected();
+    }
+
+    Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Отправляет одно сообщение в лобби клиента.
+     */
+    void send() {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            stats.sendFailed();
+            return;
+        }
+        try {
+            long sentNanos = System.nanoTime();
+            String text = MARK + sentNanos + ":" + padding;
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("text", text, "senderId", userId, "lobbyId", lobbyId));
+            current.send(sendHeaders, body);
+            if (stats.inWindow(sentNanos)) {
+                stats.sent();
+            }
+        } catch (IOException | RuntimeException e) {
+            stats.sendFailed();
+        }
+    }
+
+    /**
+     * Закрывает сессию.
+     */
+    void disconnect() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        session.subscribe("/topic/lobby/" + lobbyId + "/messages", this);
+        this.session = session;
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+                                Throwable exception) {
+        failure = exception;
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        failure = exception;
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return byte[].class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        try {
+            JsonNode message = objectMapper.readTree((byte[]) payload);
+            String text = message.path("text").asText();
+            if (text.startsWith(MARK)) {
+                int end = text.indexOf(':', MARK.length());
+                long sentNanos = Long.parseLong(text.substring(MARK.length(), end));
+                if (stats.inWindow(sentNanos)) {
+                    stats.delivered(sentNanos);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+    }
+}
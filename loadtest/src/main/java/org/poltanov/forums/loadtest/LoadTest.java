@@ -0,0 +1,272 @@
+package org.poltanov.forums.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.HdrHistogram.Histogram;
+import org.poltanov.forums.ForumsApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Нагрузочный тест чата: множество клиентов STOMP отправляют сообщения в свои лобби и замеряют задержку доставки.
+ * <p>
+ * Порядок работы: при {@code --embedded} запускаются PostgreSQL и приложение в этом же процессе; затем
+ * регистрируются пользователи, создаются лобби, клиенты вступают в лобби и подключаются к {@code /ws} с заданной
+ * частотой. После прогрева открывается окно замера, по его окончании печатаются пропускная способность, перцентили
+ * задержки доставки и изменения памяти и сборок мусора приложения из {@code /actuator/prometheus}.
+ * </p>
+ * Параметры описаны в {@link LoadTestOptions}, пример запуска — в {@code loadtest/README.md}.
+ */
+public class LoadTest {
+
+    private static final int SETUP_THREADS = 32;
+    private static final long DRAIN_MS = 5000;
+    private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+
+    private final LoadTestOptions options;
+    private final LatencyStats stats = new LatencyStats();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<LoadClient> clients = new ArrayList<>();
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        System.out.println("Параметры: " + options);
+
+        EmbeddedPostgres postgres = null;
+        ConfigurableApplicationContext application = null;
+        try {
+            if (options.embedded) {
+                postgres = EmbeddedPostgres.builder().start();
+                application = startApplication(options, postgres);
+                String port = application.getEnvironment().getProperty("local.server.port");
+                options.url = URI.create(options.url.getScheme() + "://" + options.url.getHost() + ":" + port);
+                System.out.println("Приложение запущено на " + options.url);
+            }
+            new LoadTest(options).run();
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options, EmbeddedPostgres postgres) {
+        List<String> appArgs = new ArrayList<>();
+        appArgs.add("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true");
+        appArgs.add("--spring.datasource.username=postgres");
+        appArgs.add("--spring.datasource.password=postgres");
+        appArgs.add("--server.port=" + Math.max(0, options.url.getPort()));
+        appArgs.add("--logging.level.root=WARN");
+        appArgs.add("--logging.level.org.springframework=WARN");
+        appArgs.add("--chat.rate-limit.enabled=false");
+        appArgs.addAll(options.appArgs);
+        return SpringApplication.run(ForumsApplication.class, appArgs.toArray(String[]::new));
+    }
+
+    private void run() throws Exception {
+        ApiClient api = new ApiClient(options.url);
+        List<ApiClient.Login> logins = login(api);
+        List<Long> lobbyIds = createLobbies(api, logins);
+        connect(logins, lobbyIds);
+
+        ScheduledExecutorService senders = startSending();
+        try {
+            System.out.printf("Прогрев %d с%n", options.warmup);
+            TimeUnit.SECONDS.sleep(options.warmup);
+            ServerStats before = ServerStats.parse(api.prometheus(logins.get(0).token()));
+            long[] gcBefore = clientGc();
+            stats.startWindow();
+            System.out.printf("Замер %d с%n", options.duration);
+            long windowStart = System.nanoTime();
+            TimeUnit.SECONDS.sleep(options.duration);
+            stats.stopWindow();
+            double seconds = (System.nanoTime() - windowStart) / 1e9;
+            TimeUnit.MILLISECONDS.sleep(DRAIN_MS);
+            ServerStats after = ServerStats.parse(api.prometheus(logins.get(0).token()));
+            report(seconds, lobbyIds.size(), before, after, gcBefore);
+        } finally {
+            senders.shutdownNow();
+            clients.forEach(LoadClient::disconnect);
+            // Даём приложению обработать отключения до его остановки.
+            TimeUnit.SECONDS.sleep(1);
+        }
+    }
+
+    private List<ApiClient.Login> login(ApiClient api) throws Exception {
+        System.out.printf("Вход %d пользователей%n", options.clients);
+        ExecutorService pool = Executors.newFixedThreadPool(SETUP_THREADS);
+        try {
+            List<CompletableFuture<ApiClient.Login>> futures = new ArrayList<>();
+            for (int i = 0; i < options.clients; i++) {
+                String username = options.userPrefix + i;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return api.registerAndLogin(username, options.password);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                }, pool));
+            }
+            List<ApiClient.Login> logins = new ArrayList<>(futures.size());
+            for (CompletableFuture<ApiClient.Login> future : futures) {
+                logins.add(future.join());
+            }
+            return logins;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<Long> createLobbies(ApiClient api, List<ApiClient.Login> logins) throws Exception {
+        System.out.printf("Создание %d лобби%n", options.lobbies);
+        List<Long> lobbyIds = new ArrayList<>(options.lobbies);
+        for (int i = 0; i < options.lobbies; i++) {
+            lobbyIds.add(api.createLobby(logins.get(i).token(), options.userPrefix + "-lobby-" + i));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(SETUP_THREADS);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = options.lobbies; i < logins.size(); i++) {
+                String token = logins.get(i).token();
+                long lobbyId = lobbyIds.get(i % options.lobbies);
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        api.joinLobby(token, lobbyId);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                }, pool));
+            }
+            futures.forEach(CompletableFuture::join);
+        } finally {
+            pool.shutdown();
+        }
+        return lobbyIds;
+    }
+
+    private void connect(List<ApiClient.Login> logins, List<Long> lobbyIds) throws InterruptedException {
+        System.out.printf("Подключение %d клиентов по %d в секунду%n", logins.size(), options.connectRate);
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(2);
+        heartbeats.setThreadNamePrefix("loadtest-heartbeat-");
+        heartbeats.initialize();
+        // Приложение склеивает накопившиеся кадры STOMP в одно сообщение WebSocket, а контейнер Tomcat
+        // по умолчанию принимает сообщения до 8 КБ и закрывает соединение при превышении.
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(MAX_MESSAGE_BYTES);
+        container.setDefaultMaxBinaryMessageBufferSize(MAX_MESSAGE_BYTES);
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient(container));
+        stompClient.setTaskScheduler(heartbeats);
+        stompClient.setInboundMessageSizeLimit(MAX_MESSAGE_BYTES);
+
+        long pauseNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, options.connectRate);
+        List<CompletableFuture<?>> futures = new ArrayList<>(logins.size());
+        for (int i = 0; i < logins.size(); i++) {
+            ApiClient.Login login = logins.get(i);
+            LoadClient client = new LoadClient(objectMapper, stats, login.userId(),
+                    lobbyIds.get(i % lobbyIds.size()), options.textLength);
+            clients.add(client);
+            futures.add(client.connect(stompClient, options.url, login.token()));
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+            }
+        }
+        // Подписка отправляется после CONNECTED; даём серверу обработать последние подписки.
+        TimeUnit.SECONDS.sleep(1);
+        long connected = clients.stream().filter(LoadClient::isConnected).count();
+        System.out.printf("Подключено %d из %d клиентов%n", connected, clients.size());
+        if (failed.get() > 0) {
+            clients.stream().map(LoadClient::getFailure).filter(f -> f != null).findFirst()
+                    .ifPresent(f -> System.out.println("Пример ошибки подключения: " + f));
+        }
+    }
+
+    private ScheduledExecutorService startSending() {
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+        if (options.rate <= 0) {
+            return senders;
+        }
+        long periodMicros = Math.max(1, (long) (1_000_000 / options.rate));
+        int senderCount = (int) Math.round(clients.size() * Math.min(1.0, Math.max(0.0, options.senders)));
+        for (int i = 0; i < senderCount; i++) {
+            LoadClient client = clients.get(i);
+            // Случайная начальная задержка, чтобы клиенты не отправляли сообщения одновременно.
+            long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+            senders.scheduleAtFixedRate(client::send, initialDelay, periodMicros, TimeUnit.MICROSECONDS);
+        }
+        return senders;
+    }
+
+    private void report(double seconds, int lobbies, ServerStats before, ServerStats after, long[] gcBefore) {
+        long sent = stats.getSent();
+        long delivered = stats.getDelivered();
+        // Каждое сообщение получают все подписчики лобби, включая отправителя.
+        double perLobby = (double) clients.size() / lobbies;
+        long expected = Math.round(sent * perLobby);
+        Histogram latency = stats.takeHistogram();
+        long[] gcAfter = clientGc();
+
+        System.out.println();
+        System.out.println("=== Результаты ===");
+        System.out.printf(Locale.ROOT, "Отправлено:          %d (%.1f/с), ошибок отправки %d%n",
+                sent, sent / seconds, stats.getSendErrors());
+        System.out.printf(Locale.ROOT, "Доставлено:          %d (%.1f/с), ожидалось %d (%.2f%%)%n",
+                delivered, delivered / seconds, expected, expected > 0 ? 100.0 * delivered / expected : 0.0);
+        System.out.printf(Locale.ROOT, "Задержка, мс:        p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                latency.getMaxValue() / 1000.0);
+        System.out.printf(Locale.ROOT, "Клиент, сборки:      %d, пауз %d мс%n",
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+        if (before != null && after != null) {
+            System.out.print(after.describeSince(before));
+        } else {
+            System.out.println("Сервер: /actuator/prometheus недоступен");
+        }
+    }
+
+    private static long[] clientGc() {
+        long count = 0;
+        long timeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            timeMs += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, timeMs};
+    }
+}
@@ -0,0 +1,130 @@
+package org.poltanov.forums.loadtest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Параметры нагрузочного теста.
+ * <p>
+ * Задаются аргументами вида {@code --имя=значение}. Аргументы после {@code --} передаются приложению,
+ * запускаемому при {@code --embedded}, например {@code -- --chat.broker.mode=sharded}.
+ * </p>
+ */
+public class LoadTestOptions {
+
+    /**
+     * Адрес приложения. При {@code --embedded} порт {@code 0} означает случайный свободный порт.
+     */
+    URI url = URI.create("http://localhost:8080");
+
+    /**
+     * Запускать ли PostgreSQL и приложение в процессе теста.
+     */
+    boolean embedded;
+
+    /**
+     * Количество клиентов STOMP; у каждого клиента свой пользователь.
+     */
+    int clients = 1000;
+
+    /**
+     * Количество лобби, между которыми клиенты распределяются поровну.
+     */
+    int lobbies = 10;
+
+    /**
+     * Частота отправки сообщений одним клиентом в секунду; {@code 0} — клиент только слушает.
+     */
+    double rate = 0.5;
+
+    /**
+     * Доля клиентов, которые отправляют сообщения.
+     */
+    double senders = 1.0;
+
+    /**
+     * Прогрев в секундах: сообщения отправляются, но не учитываются.
+     */
+    int warmup = 10;
+
+    /**
+     * Длительность замера в секундах.
+     */
+    int duration = 60;
+
+    /**
+     * Количество новых подключений в секунду при разгоне.
+     */
+    int connectRate = 200;
+
+    /**
+     * Длина текста сообщения в символах.
+     */
+    int textLength = 64;
+
+    /**
+     * Префикс имён пользователей теста. Пользователи переиспользуются между запусками.
+     */
+    String userPrefix = "loadtest";
+
+    /**
+     * Пароль пользователей теста.
+     */
+    String password = "loadtest-password";
+
+    /**
+     * Аргументы приложения, запускаемого при {@code --embedded}.
+     */
+    final List<String> appArgs = new ArrayList<>();
+
+    /**
+     * Разбирает аргументы командной строки.
+     *
+     * @param args аргументы
+     * @return параметры теста
+     * @throws IllegalArgumentException если аргумент неизвестен или имеет неверный формат
+     */
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                options.appArgs.addAll(List.of(args).subList(i + 1, args.length));
+                break;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = eq > 0 ? arg.substring(2, eq) : arg.substring(2);
+            String value = eq > 0 ? arg.substring(eq + 1) : "true";
+            switch (name) {
+                case "url" -> options.url = URI.create(value);
+                case "embedded" -> options.embedded = Boolean.parseBoolean(value);
+                case "clients" -> options.clients = Integer.parseInt(value);
+                case "lobbies" -> options.lobbies = Integer.parseInt(value);
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "senders" -> options.senders = Double.parseDouble(value);
+                case "warmup" -> options.warmup = Integer.parseInt(value);
+                case "duration" -> options.duration = Integer.parseInt(value);
+                case "connect-rate" -> options.connectRate = Integer.parseInt(value);
+                case "text-length" -> options.textLength = Integer.parseInt(value);
+                case "user-prefix" -> options.userPrefix = value;
+                case "password" -> options.password = value;
+                default -> throw new IllegalArgumentException("Неизвестный параметр: --" + name);
+            }
+        }
+        if (options.clients < 1 || options.lobbies < 1 || options.lobbies > options.clients) {
+            throw new IllegalArgumentException("Нужно 1 <= lobbies <= clients");
+        }
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return "url=" + url + ", embedded=" + embedded + ", clients=" + clients + ", lobbies=" + lobbies
+                + ", rate=" + rate + "/s, senders=" + senders + ", warmup=" + warmup + "s, duration=" + duration
+                + "s, textLength=" + textLength + (appArgs.isEmpty() ? "" : ", appArgs=" + appArgs);
+    }
+}
@@ -0,0 +1,87 @@
+package org.poltanov.forums.loadtest;
+
+import java.util.Locale;
+
+/**
+ * Снимок метрик приложения из {@code /actuator/prometheus}, нужных для отчёта: память, сборки мусора,
+ * время обработки сообщений на сервере.
+ * <p>
+ * Значения метрик с несколькими наборами меток суммируются, например паузы всех сборщиков мусора.
+ * </p>
+ */
+class ServerStats {
+
+    private double heapUsedBytes;
+    private double gcPauses;
+    private double gcPauseSeconds;
+    private double processedMessages;
+    private double processingSeconds;
+    private double cpuUsage = Double.NaN;
+    private double liveThreads;
+
+    /**
+     * Разбирает метрики в текстовом формате Prometheus.
+     *
+     * @param text текст метрик
+     * @return снимок или {@code null}, если метрики недоступны
+     */
+    static ServerStats parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        ServerStats stats = new ServerStats();
+        for (String line : text.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            if (space < 0) {
+                continue;
+            }
+            String series = line.substring(0, space);
+            double value;
+            try {
+                value = Double.parseDouble(line.substring(space + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (series.startsWith("jvm_memory_used_bytes{") && series.contains("area=\"heap\"")) {
+                stats.heapUsedBytes += value;
+            } else if (series.startsWith("jvm_gc_pause_seconds_count{")) {
+                stats.gcPauses += value;
+            } else if (series.startsWith("jvm_gc_pause_seconds_sum{")) {
+                stats.gcPauseSeconds += value;
+            } else if (series.startsWith("chat_message_stage_seconds_count{") && series.contains("stage=\"total\"")) {
+                stats.processedMessages += value;
+            } else if (series.startsWith("chat_message_stage_seconds_sum{") && series.contains("stage=\"total\"")) {
+                stats.processingSeconds += value;
+            } else if (series.equals("process_cpu_usage")) {
+                stats.cpuUsage = value;
+            } else if (series.equals("jvm_threads_live_threads")) {
+                stats.liveThreads = value;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Описывает изменения метрик с предыдущего снимка.
+     *
+     * @param before снимок до замера
+     * @return строки отчёта
+     */
+    String describeSince(ServerStats before) {
+        double processed = processedMessages - before.processedMessages;
+        double pauses = gcPauses - before.gcPauses;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Сервер, heap:        %.1f МБ -> %.1f МБ%n",
+                before.heapUsedBytes / (1 << 20), heapUsedBytes / (1 << 20)));
+        report.append(String.format(Locale.ROOT, "Сервер, сборки:      %.0f, пауз %.0f мс%n",
+                pauses, (gcPauseSeconds - before.gcPauseSeconds) * 1000));
+        report.append(String.format(Locale.ROOT, "Сервер, обработка:   %.0f сообщений, в среднем %.3f мс%n",
+                processed, processed > 0 ? (processingSeconds - before.processingSeconds) * 1000 / processed : 0.0));
+        report.append(String.format(Locale.ROOT, "Сервер, CPU:         %.0f%%, потоков %.0f%n",
+                Double.isNaN(cpuUsage) ? 0.0 : cpuUsage * 100, liveThreads));
+        return report.toString();
+    }
+}
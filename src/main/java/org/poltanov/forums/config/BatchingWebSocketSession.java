@@ -0,0 +1,225 @@
+package org.poltanov.forums.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Сессия WebSocket с очередью исходящих кадров.
+ * <p>
+ * Кадры STOMP, накопившиеся за окно {@code flush-window-ms}, отправляются одной записью в WebSocket:
+ * текстовые и двоичные кадры склеиваются, так как каждый кадр STOMP завершается нулевым байтом.
+ * Объём очереди ограничен {@code max-queued-bytes}; при переполнении применяется
+ * {@link OutboundSessionPolicy.Overflow политика переполнения}.
+ * </p>
+ * Записи в исходную сессию выполняются строго по одной и в порядке постановки в очередь.
+ */
+public class BatchingWebSocketSession extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingWebSocketSession.class);
+
+    private final OutboundSessionPolicy policy;
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private final Object sendLock = new Object();
+
+    private volatile long queuedBytes;
+    private volatile int queuedMessages;
+    private volatile long flushStartedAt;
+    private volatile boolean closed;
+    private boolean flushScheduled;
+
+    /**
+     * Конструктор для создания экземпляра {@link BatchingWebSocketSession}.
+     *
+     * @param delegate исходная сессия
+     * @param policy   политика отправки исходящих кадров
+     */
+    public BatchingWebSocketSession(WebSocketSession delegate, OutboundSessionPolicy policy) {
+        super(delegate);
+        this.policy = policy;
+    }
+
+    /**
+     * Возвращает объём кадров, ожидающих отправки.
+     *
+     * @return объём очереди в байтах
+     */
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Возвращает количество кадров, ожидающих отправки.
+     *
+     * @return длина очереди
+     */
+    public int getQueuedMessages() {
+        return queuedMessages;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closed) {
+            return;
+        }
+
+        boolean overflow = false;
+        boolean schedule = false;
+        synchronized (this) {
+            int bytes = message.getPayloadLength();
+            queue.addLast(new Pending(message, bytes));
+            queuedBytes += bytes;
+            if (queuedBytes > policy.getMaxQueuedBytes()) {
+                overflow = !shedDroppable();
+            }
+            queuedMessages = queue.size();
+            if (!overflow && !flushScheduled) {
+                flushScheduled = true;
+                schedule = true;
+            }
+        }
+
+        long started = flushStartedAt;
+        if (overflow) {
+            disconnect("очередь исходящих кадров превысила " + policy.getMaxQueuedBytes() + " байт");
+        } else if (started != 0 && System.currentTimeMillis() - started > policy.getSendTimeLimitMs()) {
+            disconnect("запись в сессию длится дольше " + policy.getSendTimeLimitMs() + " мс");
+        } else if (schedule) {
+            policy.scheduleFlush(this::flush);
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        closed = true;
+        super.close(status);
+    }
+
+    /**
+     * Отбрасывает самые старые отбрасываемые кадры, пока очередь не уложится в лимит.
+     * Вызывается под блокировкой сессии.
+     *
+     * @return {@code true}, если очередь уложилась в лимит
+     */
+    private boolean shedDroppable() {
+        if (policy.getOverflow() != OutboundSessionPolicy.Overflow.DROP_DROPPABLE) {
+            return false;
+        }
+        Iterator<Pending> iterator = queue.iterator();
+        while (queuedBytes > policy.getMaxQueuedBytes() && iterator.hasNext()) {
+            Pending pending = iterator.next();
+            if (policy.isDroppable(pending.message())) {
+                iterator.remove();
+                queuedBytes -= pending.bytes();
+                policy.recordDropped();
+            }
+        }
+        return queuedBytes <= policy.getMaxQueuedBytes();
+    }
+
+    /**
+     * Отправляет все накопившиеся кадры, склеивая соседние кадры одного типа в одну запись.
+     */
+    void flush() {
+        synchronized (sendLock) {
+            List<Pending> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(queue);
+                queue.clear();
+                queuedBytes = 0;
+                queuedMessages = 0;
+                flushScheduled = false;
+            }
+            if (batch.isEmpty() || closed) {
+                return;
+            }
+
+            flushStartedAt = System.currentTimeMillis();
+            try {
+                policy.recordBatch(batch.size());
+                int start = 0;
+                while (start < batch.size()) {
+                    int end = start + 1;
+                    while (end < batch.size() && sameType(batch.get(start), batch.get(end))) {
+                        end++;
+                    }
+                    getDelegate().sendMessage(coalesce(batch.subList(start, end)));
+                    start = end;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Ошибка при отправке кадров сессии {}: {}", getId(), e.getMessage());
+                disconnect("ошибка записи");
+            } finally {
+                flushStartedAt = 0;
+            }
+        }
+    }
+
+    private static boolean sameType(Pending first, Pending next) {
+        return (first.message() instanceof TextMessage && next.message() instanceof TextMessage)
+                || (first.message() instanceof BinaryMessage && next.message() instanceof BinaryMessage);
+    }
+
+    private static WebSocketMessage<?> coalesce(List<Pending> group) {
+        if (group.size() == 1) {
+            return group.get(0).message();
+        }
+        if (group.get(0).message() instanceof TextMessage) {
+            StringBuilder text = new StringBuilder();
+            for (Pending pending : group) {
+                text.append(((TextMessage) pending.message()).getPayload());
+            }
+            return new TextMessage(text);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Pending pending : group) {
+            ByteBuffer payload = ((BinaryMessage) pending.message()).getPayload().duplicate();
+            byte[] frame = new byte[payload.remaining()];
+            payload.get(frame);
+            bytes.writeBytes(frame);
+        }
+        return new BinaryMessage(bytes.toByteArray());
+    }
+
+    private void disconnect(String reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (this) {
+            queue.clear();
+            queuedBytes = 0;
+            queuedMessages = 0;
+        }
+        policy.recordDisconnect();
+        logger.warn("Медленный клиент отключён, сессия {}: {}", getId(), reason);
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            logger.debug("Ошибка при закрытии сессии {}: {}", getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Кадр, ожидающий отправки.
+     *
+     * @param message кадр
+     * @param bytes   размер кадра в байтах
+     */
+    private record Pending(WebSocketMessage<?> message, int bytes) {
+    }
+}
@@ -0,0 +1,208 @@
+package org.poltanov.forums.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Компактное двоичное кодирование событий для конечной точки {@code /ws-native}.
+ * <p>
+ * Кодирование выбирается при рукопожатии параметром запроса {@code encoding}: {@code cbor} (по умолчанию)
+ * или {@code json}. Для сессий с {@code cbor} тело JSON каждого исходящего {@code MESSAGE} перекодируется в CBOR,
+ * а поле {@code timestamp} заменяется числом миллисекунд с начала эпохи. Такой кадр получает тип содержимого
+ * {@code application/octet-stream}, поэтому STOMP отправляет его двоичным кадром WebSocket.
+ * </p>
+ * Брокер передаёт всем подписчикам адреса один и тот же массив байтов JSON, поэтому результат перекодирования
+ * кэшируется по ссылке на этот массив и вычисляется один раз на событие, а не на каждую сессию.
+ */
+@Component
+public class BinaryFrameEncoding implements HandshakeInterceptor, ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryFrameEncoding.class);
+
+    /**
+     * Атрибут сессии WebSocket с выбранным кодированием.
+     */
+    public static final String ENCODING_ATTRIBUTE = "encoding";
+
+    /**
+     * Кодирование CBOR.
+     */
+    public static final String CBOR = "cbor";
+
+    /**
+     * Кодирование JSON.
+     */
+    public static final String JSON = "json";
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Перекодированные тела событий по ссылке на исходный массив JSON. Ключи слабые и сравниваются по ссылке,
+     * поэтому запись исчезает вместе с событием.
+     */
+    private final Cache<byte[], byte[]> transcoded = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(1024)
+            .build();
+
+    /**
+     * Сохраняет в атрибутах сессии кодирование, запрошенное клиентом.
+     *
+     * @param request    HTTP-запрос
+     * @param response   HTTP-ответ
+     * @param wsHandler  обработчик WebSocket
+     * @param attributes атрибуты, которые будут доступны в WebSocket-сессии
+     * @return {@code true}, если кодирование поддерживается; {@code false} в противном случае
+     */
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String encoding = CBOR;
+        String query = request.getURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("encoding=")) {
+                    encoding = param.substring(9).toLowerCase();
+                    break;
+                }
+            }
+        }
+
+        if (!CBOR.equals(encoding) && !JSON.equals(encoding)) {
+            logger.warn("Неподдерживаемое кодирование WebSocket: {}", encoding);
+            return false;
+        }
+        attributes.put(ENCODING_ATTRIBUTE, encoding);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    /**
+     * Запоминает сессию, если при рукопожатии было выбрано кодирование CBOR.
+     *
+     * @param event событие подключения клиента STOMP
+     */
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(event.getMessage().getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (attributes != null && sessionId != null && CBOR.equals(attributes.get(ENCODING_ATTRIBUTE))) {
+            cborSessions.add(sessionId);
+        }
+    }
+
+    /**
+     * Забывает отключившуюся сессию.
+     *
+     * @param event событие отключения клиента STOMP
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    /**
+     * Перекодирует тело исходящего {@code MESSAGE} в CBOR для сессий, выбравших это кодирование.
+     *
+     * @param message исходящее сообщение
+     * @param channel канал исходящих сообщений клиентам
+     * @return исходное сообщение или сообщение с телом в CBOR
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (cborSessions.isEmpty()) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        if (accessor == null || accessor.getMessageType() != SimpMessageType.MESSAGE
+                || !cborSessions.contains(accessor.getSessionId())
+                || !(message.getPayload() instanceof byte[] json)
+                || !isJson(accessor.getContentType())) {
+            return message;
+        }
+
+        byte[] cbor = transcoded.get(json, this::toCbor);
+        if (cbor == null) {
+            return message;
+        }
+        MessageHeaderAccessor mutable = MessageHeaderAccessor.getMutableAccessor(message);
+        mutable.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        return MessageBuilder.createMessage(cbor, mutable.getMessageHeaders());
+    }
+
+    /**
+     * Перекодирует тело события из JSON в CBOR.
+     *
+     * @param json тело события в формате JSON
+     * @return тело события в формате CBOR или {@code null}, если JSON не удалось разобрать
+     */
+    byte[] toCbor(byte[] json) {
+        try {
+            JsonNode tree = jsonMapper.readTree(json);
+            if (tree instanceof ObjectNode object) {
+                compactTimestamp(object);
+            }
+            return cborMapper.writeValueAsBytes(tree);
+        } catch (IOException e) {
+            logger.warn("Не удалось перекодировать событие в CBOR: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void compactTimestamp(ObjectNode object) {
+        JsonNode timestamp = object.get("timestamp");
+        if (timestamp == null || !timestamp.isTextual()) {
+            return;
+        }
+        try {
+            long epochMillis = LocalDateTime.parse(timestamp.asText())
+                    .atZone(ZoneId.systemDefault())
+                    .toInstant()
+                    .toEpochMilli();
+            object.put("timestamp", epochMillis);
+        } catch (DateTimeParseException e) {
+            // Оставляем значение строкой, если это не дата в формате ISO.
+        }
+    }
+
+    private static boolean isJson(MimeType contentType) {
+        return contentType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType);
+    }
+}
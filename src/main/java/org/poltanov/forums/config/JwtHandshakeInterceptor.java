@@ -1,6 +1,7 @@
 package org.poltanov.forums.config;
 
-import org.poltanov.forums.util.JwtUtil;
+import org.poltanov.forums.util.JwtUserPrincipal;
+import org.poltanov.forums.util.VerifiedTokenCache;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.stereotype.Component;
@@ -15,15 +16,15 @@ import java.util.Map;
 @Component
 public class JwtHandshakeInterceptor implements HandshakeInterceptor {
 
-    private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     /**
      * Конструктор для создания экземпляра JwtHandshakeInterceptor.
      *
-     * @param jwtUtil утилита для работы с JWT-токенами
+     * @param verifiedTokenCache кэш проверенных JWT-токенов
      */
-    public JwtHandshakeInterceptor(JwtUtil jwtUtil) {
-        this.jwtUtil = jwtUtil;
+    public JwtHandshakeInterceptor(VerifiedTokenCache verifiedTokenCache) {
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     /**
@@ -51,9 +52,10 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
             }
         }
 
-        if (token != null && jwtUtil.validateToken(token)) {
-            String username = jwtUtil.extractUsername(token);
-            attributes.put("username", username);
+        JwtUserPrincipal principal = token != null ? verifiedTokenCache.verify(token) : null;
+        if (principal != null) {
+            attributes.put("username", principal.getUsername());
+            attributes.put("userId", principal.getUserId());
             return true;
         }
 
@@ -0,0 +1,65 @@
+package org.poltanov.forums.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * Конфигурация метрик WebSocket.
+ * <p>
+ * Регистрирует {@code chat.ws.sessions} — открытые сессии STOMP узла, а также {@code chat.ws.channel.queued}
+ * и {@code chat.ws.channel.active} с тегом {@code channel} — задачи в очереди и занятые потоки каналов
+ * {@code clientInboundChannel} и {@code clientOutboundChannel}. Для каналов на виртуальных потоках очереди нет,
+ * и метрики каналов не регистрируются. Значения читаются только при сборе метрик.
+ * </p>
+ * Отключается вместе с остальными метриками чата свойством {@code chat.metrics.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsConfig {
+
+    /**
+     * Создаёт метрики сессий и каналов STOMP.
+     *
+     * @param webSocketHandler       обработчик сессий WebSocket брокера STOMP
+     * @param clientInboundExecutor  исполнитель канала входящих сообщений клиентов
+     * @param clientOutboundExecutor исполнитель канала исходящих сообщений клиентам
+     * @return привязка метрик к реестру
+     */
+    @Bean
+    public MeterBinder webSocketMetrics(@Qualifier("subProtocolWebSocketHandler") WebSocketHandler webSocketHandler,
+                                        @Qualifier("clientInboundChannelExecutor") TaskExecutor clientInboundExecutor,
+                                        @Qualifier("clientOutboundChannelExecutor") TaskExecutor clientOutboundExecutor) {
+        return registry -> {
+            if (webSocketHandler instanceof SubProtocolWebSocketHandler handler) {
+                Gauge.builder("chat.ws.sessions", handler, h -> h.getStats().getTotalSessions())
+                        .description("Открытые сессии STOMP")
+                        .register(registry);
+            }
+            bindChannel(registry, "inbound", clientInboundExecutor);
+            bindChannel(registry, "outbound", clientOutboundExecutor);
+        };
+    }
+
+    private static void bindChannel(MeterRegistry registry, String channel, TaskExecutor executor) {
+        if (!(executor instanceof ThreadPoolTaskExecutor pool)) {
+            return;
+        }
+        Gauge.builder("chat.ws.channel.queued", pool, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Сообщения в очереди канала STOMP")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("chat.ws.channel.active", pool, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Потоки канала STOMP, обрабатывающие сообщения")
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
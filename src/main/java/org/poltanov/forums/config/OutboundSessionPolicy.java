@@ -0,0 +1,309 @@
+package org.poltanov.forums.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.util.ThreadFactories;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Политика отправки исходящих кадров WebSocket: пакетная запись, ограничение очереди сессии
+ * и поведение при медленном клиенте.
+ * <p>
+ * Оборачивает каждую сессию в {@link BatchingWebSocketSession}. При {@code overflow=drop-droppable} переполненная
+ * очередь сначала освобождается от самых старых кадров с адресами из {@code droppable-destinations}
+ * (список лобби, состав участников, индикаторы набора), и только если этого мало, сессия отключается. При {@code overflow=disconnect}
+ * сессия отключается сразу.
+ * </p>
+ * Очереди сессий описываются агрегатными метриками без тегов сессии и пользователя, поэтому число временных рядов
+ * не зависит от числа подключений: {@code chat.ws.outbound.queued.bytes} и {@code chat.ws.outbound.queued.messages} —
+ * сумма по всем сессиям узла, {@code chat.ws.outbound.queued.bytes.max} — очередь самого медленного клиента.
+ */
+@Component
+public class OutboundSessionPolicy implements WebSocketHandlerDecoratorFactory {
+
+    /**
+     * Поведение при переполнении очереди сессии.
+     */
+    public enum Overflow {
+        /**
+         * Отбросить самые старые отбрасываемые кадры, а если этого мало — отключить сессию.
+         */
+        DROP_DROPPABLE,
+        /**
+         * Отключить сессию.
+         */
+        DISCONNECT
+    }
+
+    private static final String DESTINATION = "\ndestination:";
+    private static final byte[] DESTINATION_HEADER = DESTINATION.getBytes(StandardCharsets.UTF_8);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final long flushWindowMs;
+    private final long maxQueuedBytes;
+    private final long sendTimeLimitMs;
+    private final Overflow overflow;
+    private final List<String> droppableDestinations;
+    private final Set<BatchingWebSocketSession> openSessions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private final Counter dropped;
+    private final Counter disconnects;
+    private final DistributionSummary batchFrames;
+
+    /**
+     * Конструктор для создания экземпляра {@link OutboundSessionPolicy}.
+     *
+     * @param flushWindowMs         окно накопления кадров перед записью в миллисекундах; {@code 0} — без накопления
+     * @param maxQueuedBytes        максимальный объём очереди сессии в байтах
+     * @param sendTimeLimitMs       максимальная длительность одной записи в миллисекундах
+     * @param overflow              поведение при переполнении: {@code drop-droppable} или {@code disconnect}
+     * @param droppableDestinations шаблоны адресов кадров, которые можно отбросить при переполнении
+     * @param flushThreads          количество потоков записи; {@code 0} — по числу процессоров
+     * @param virtualThreads        использовать ли виртуальные потоки для записи
+     * @param meterRegistry         реестр метрик
+     */
+    public OutboundSessionPolicy(@Value("${chat.ws.outbound.flush-window-ms:5}") long flushWindowMs,
+                                 @Value("${chat.ws.outbound.max-queued-bytes:524288}") long maxQueuedBytes,
+                                 @Value("${chat.ws.outbound.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                                 @Value("${chat.ws.outbound.overflow:drop-droppable}") String overflow,
+                                 @Value("${chat.ws.outbound.droppable-destinations:/topic/lobbies,/topic/lobby/*/participants,/topic/lobby/*/typing}")
+                                 List<String> droppableDestinations,
+                                 @Value("${chat.ws.outbound.flush-threads:0}") int flushThreads,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                 MeterRegistry meterRegistry) {
+        this.flushWindowMs = flushWindowMs;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.overflow = Overflow.valueOf(overflow.trim().toUpperCase().replace('-', '_'));
+        this.droppableDestinations = droppableDestinations;
+
+        this.flusher = Executors.newScheduledThreadPool(
+                flushThreads > 0 ? flushThreads : Runtime.getRuntime().availableProcessors(),
+                ThreadFactories.named("ws-outbound-flush-", virtualThreads));
+
+        this.dropped = Counter.builder("chat.ws.outbound.dropped")
+                .description("Исходящие кадры, отброшенные при переполнении очереди сессии")
+                .register(meterRegistry);
+        this.disconnects = Counter.builder("chat.ws.outbound.disconnects")
+                .description("Сессии, отключённые как медленные клиенты")
+                .register(meterRegistry);
+        this.batchFrames = DistributionSummary.builder("chat.ws.outbound.batch.frames")
+                .description("Количество кадров STOMP в одной записи в WebSocket")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queued.bytes", openSessions,
+                        sessions -> sessions.stream().mapToLong(BatchingWebSocketSession::getQueuedBytes).sum())
+                .description("Суммарный объём очередей исходящих кадров всех сессий в байтах")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queued.bytes.max", openSessions,
+                        sessions -> sessions.stream().mapToLong(BatchingWebSocketSession::getQueuedBytes).max().orElse(0))
+                .description("Наибольший объём очереди исходящих кадров одной сессии в байтах")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queued.messages", openSessions,
+                        sessions -> sessions.stream().mapToLong(BatchingWebSocketSession::getQueuedMessages).sum())
+                .description("Суммарное количество кадров в очередях исходящих кадров всех сессий")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Останавливает потоки записи.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new SessionHandler(handler);
+    }
+
+    /**
+     * Возвращает максимальный объём очереди сессии.
+     *
+     * @return объём в байтах
+     */
+    public long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Возвращает максимальную длительность одной записи в сессию.
+     *
+     * @return длительность в миллисекундах
+     */
+    public long getSendTimeLimitMs() {
+        return sendTimeLimitMs;
+    }
+
+    /**
+     * Возвращает поведение при переполнении очереди сессии.
+     *
+     * @return политика переполнения
+     */
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Планирует запись накопившихся кадров сессии по истечении окна накопления.
+     *
+     * @param flush задача записи
+     */
+    void scheduleFlush(Runnable flush) {
+        if (flushWindowMs <= 0) {
+            flush.run();
+        } else {
+            flusher.schedule(flush, flushWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Проверяет, можно ли отбросить кадр при переполнении очереди.
+     *
+     * @param message исходящий кадр STOMP
+     * @return {@code true}, если адрес кадра подходит под один из {@code droppable-destinations}
+     */
+    boolean isDroppable(WebSocketMessage<?> message) {
+        String destination = destinationOf(message);
+        if (destination == null) {
+            return false;
+        }
+        for (String pattern : droppableDestinations) {
+            if (pathMatcher.match(pattern.trim(), destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordDisconnect() {
+        disconnects.increment();
+    }
+
+    void recordBatch(int frames) {
+        batchFrames.record(frames);
+    }
+
+    /**
+     * Извлекает заголовок {@code destination} из кадра STOMP {@code MESSAGE} без полного разбора кадра.
+     */
+    private static String destinationOf(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            String frame = text.getPayload();
+            int headersEnd = frame.indexOf("\n\n");
+            int start = frame.indexOf(DESTINATION);
+            if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+                return null;
+            }
+            start += DESTINATION.length();
+            int end = frame.indexOf('\n', start);
+            return frame.substring(start, end < 0 ? frame.length() : end);
+        }
+
+        byte[] frame;
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            frame = new byte[payload.remaining()];
+            payload.get(frame);
+        } else {
+            return null;
+        }
+
+        int headersEnd = indexOf(frame, new byte[]{'\n', '\n'}, 0);
+        int start = indexOf(frame, DESTINATION_HEADER, 0);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length;
+        int end = start;
+        while (end < frame.length && frame[end] != '\n') {
+            end++;
+        }
+        return new String(frame, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Обработчик, который подменяет сессию на {@link BatchingWebSocketSession} во всех обратных вызовах
+     * и учитывает её очередь в метриках.
+     */
+    private final class SessionHandler extends WebSocketHandlerDecorator {
+
+        private final Map<String, BatchingWebSocketSession> sessions = new ConcurrentHashMap<>();
+
+        SessionHandler(WebSocketHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            BatchingWebSocketSession batching = new BatchingWebSocketSession(session, OutboundSessionPolicy.this);
+            sessions.put(session.getId(), batching);
+            openSessions.add(batching);
+            super.afterConnectionEstablished(batching);
+        }
+
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+            super.handleMessage(resolve(session), message);
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+            super.handleTransportError(resolve(session), exception);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+            BatchingWebSocketSession batching = sessions.remove(session.getId());
+            if (batching != null) {
+                openSessions.remove(batching);
+            }
+            super.afterConnectionClosed(batching != null ? batching : session, closeStatus);
+        }
+
+        private WebSocketSession resolve(WebSocketSession session) {
+            BatchingWebSocketSession batching = sessions.get(session.getId());
+            return batching != null ? batching : session;
+        }
+    }
+}
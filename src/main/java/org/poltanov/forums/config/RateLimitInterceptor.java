@@ -0,0 +1,138 @@
+package org.poltanov.forums.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.poltanov.forums.dto.SendRejectedMessage;
+import org.poltanov.forums.exception.RateLimitExceededException;
+import org.poltanov.forums.service.RateLimiter;
+import org.poltanov.forums.util.JwtRequestFilter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Применяет {@link RateLimiter} к отправке сообщений и созданию лобби до вызова сервисов.
+ * <p>
+ * Для STOMP перехватчик стоит на канале входящих сообщений и проверяет кадры {@code SEND} на
+ * {@code /app/chat.sendMessage}; пользователь берётся из атрибута {@code userId}, записанного при рукопожатии.
+ * Отклонённый кадр отбрасывается, а сессия получает {@link SendRejectedMessage} в {@code /user/queue/errors}.
+ * Кадр {@code ERROR} не отправляется, потому что по STOMP после него сервер закрывает соединение.
+ * </p>
+ * Для REST перехватчик проверяет {@code POST /messages/send} и {@code POST /lobby/create}; пользователь берётся
+ * из проверенного JWT токена. Отклонённый запрос получает HTTP 429 с заголовком {@code Retry-After}.
+ */
+@Component
+public class RateLimitInterceptor implements ChannelInterceptor, HandlerInterceptor {
+
+    private static final String CHAT_SEND_DESTINATION = "/app/chat.sendMessage";
+
+    private static final String ERRORS_DESTINATION = "/queue/errors";
+    private static final String RATE_LIMITED_TEXT = "Слишком много запросов. Повторите позже.";
+
+    private final RateLimiter rateLimiter;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    /**
+     * Конструктор для создания экземпляра {@link RateLimitInterceptor}.
+     *
+     * @param rateLimiter       ограничение частоты запросов пользователей
+     * @param messagingTemplate шаблон для уведомления сессии об отклонённом кадре; загружается лениво,
+     *                          потому что сам перехватчик нужен для настройки брокера
+     */
+    public RateLimitInterceptor(RateLimiter rateLimiter, ObjectProvider<SimpMessagingTemplate> messagingTemplate) {
+        this.rateLimiter = rateLimiter;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Проверяет частоту отправки сообщений через STOMP.
+     *
+     * @param message входящее сообщение клиента
+     * @param channel канал входящих сообщений
+     * @return то же сообщение или {@code null}, если пользователь превысил допустимую частоту и кадр отброшен
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !CHAT_SEND_DESTINATION.equals(destination)) {
+            return message;
+        }
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        Object userId = attributes != null ? attributes.get("userId") : null;
+        long retryAfterMs = rateLimiter.tryAcquire(RateLimiter.Limit.CHAT_SEND, userId);
+        if (retryAfterMs <= 0) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId != null) {
+            notifyRejected(sessionId, new SendRejectedMessage(destination, RATE_LIMITED_TEXT, retryAfterMs));
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет частоту отправки сообщений и создания лобби через REST.
+     *
+     * @param request  текущий HTTP запрос
+     * @param response текущий HTTP ответ
+     * @param handler  обработчик запроса
+     * @return {@code true}, если запрос принят
+     * @throws RateLimitExceededException если пользователь превысил допустимую частоту
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"POST".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        RateLimiter.Limit limit = switch (path) {
+            case "/messages/send" -> RateLimiter.Limit.MESSAGES_SEND;
+            case "/lobby/create" -> RateLimiter.Limit.LOBBY_CREATE;
+            default -> null;
+        };
+        if (limit != null) {
+            check(limit, userOf(request));
+        }
+        return true;
+    }
+
+    private void check(RateLimiter.Limit limit, Object user) {
+        long retryAfterMs = rateLimiter.tryAcquire(limit, user);
+        if (retryAfterMs > 0) {
+            throw new RateLimitExceededException(RATE_LIMITED_TEXT, retryAfterMs);
+        }
+    }
+
+    /**
+     * Отправляет уведомление в {@code /user/queue/errors} одной сессии: адрес с ID сессии вместо имени пользователя
+     * и заголовок {@code simpSessionId} направляют его только в эту сессию.
+     */
+    private void notifyRejected(String sessionId, SendRejectedMessage rejected) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.getObject().convertAndSendToUser(sessionId, ERRORS_DESTINATION, rejected,
+                accessor.getMessageHeaders());
+    }
+
+    private static Object userOf(HttpServletRequest request) {
+        Object userId = request.getAttribute(JwtRequestFilter.USER_ID_ATTRIBUTE);
+        if (userId != null) {
+            return userId;
+        }
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? principal.getName() : null;
+    }
+}
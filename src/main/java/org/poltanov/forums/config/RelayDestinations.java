@@ -0,0 +1,94 @@
+package org.poltanov.forums.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Переводит адреса {@code /topic} между форматом приложения и форматом внешнего STOMP-брокера
+ * в режиме {@code chat.broker.mode=relay}.
+ * <p>
+ * Клиенты и сервисы приложения используют адреса вида {@code /topic/lobby/1/messages}. RabbitMQ считает всё после
+ * {@code /topic/} ключом маршрутизации обменника {@code amq.topic} и отклоняет адреса, в которых этот ключ
+ * содержит {@code /}: сессия получает кадр {@code ERROR} и закрывается. Поэтому во внешний брокер адреса
+ * уходят с точками вместо косой черты ({@code /topic/lobby.1.messages}), а в кадрах {@code MESSAGE} клиентам
+ * возвращается исходный вид. Адреса без вложенных сегментов, например {@code /topic/lobbies}, не меняются.
+ * </p>
+ * Перехватчик стоит на канале входящих сообщений клиентов (кадры {@code SUBSCRIBE} и {@code SEND}),
+ * на канале брокера (события, которые рассылает приложение) и на канале исходящих сообщений клиентам.
+ * Исходное сообщение не изменяется: обработчики событий сессий, например {@code PresenceRegistry},
+ * по-прежнему видят адрес подписки в формате приложения.
+ */
+public class RelayDestinations implements ChannelInterceptor {
+
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String STOMP_DESTINATION_HEADER = "destination";
+
+    private final boolean toBroker;
+
+    private RelayDestinations(boolean toBroker) {
+        this.toBroker = toBroker;
+    }
+
+    /**
+     * Создаёт перехватчик для каналов входящих сообщений клиентов и брокера.
+     *
+     * @return перехватчик, переводящий адреса в формат брокера
+     */
+    public static RelayDestinations inbound() {
+        return new RelayDestinations(true);
+    }
+
+    /**
+     * Создаёт перехватчик для канала исходящих сообщений клиентам.
+     *
+     * @return перехватчик, переводящий адреса в формат приложения
+     */
+    public static RelayDestinations outbound() {
+        return new RelayDestinations(false);
+    }
+
+    /**
+     * Переводит адрес приложения в адрес внешнего брокера.
+     *
+     * @param destination адрес вида {@code /topic/lobby/1/messages}
+     * @return адрес вида {@code /topic/lobby.1.messages}
+     */
+    public static String toBroker(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return destination;
+        }
+        return TOPIC_PREFIX + destination.substring(TOPIC_PREFIX.length()).replace('/', '.');
+    }
+
+    /**
+     * Переводит адрес внешнего брокера в адрес приложения.
+     *
+     * @param destination адрес вида {@code /topic/lobby.1.messages}
+     * @return адрес вида {@code /topic/lobby/1/messages}
+     */
+    public static String fromBroker(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return destination;
+        }
+        return TOPIC_PREFIX + destination.substring(TOPIC_PREFIX.length()).replace('.', '/');
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String translated = toBroker ? toBroker(destination) : fromBroker(destination);
+        if (translated == null || translated.equals(destination)) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setDestination(translated);
+        // Кадры STOMP несут адрес и в собственном заголовке, из которого StompHeaderAccessor восстанавливает адрес.
+        if (accessor.getFirstNativeHeader(STOMP_DESTINATION_HEADER) != null) {
+            accessor.setNativeHeader(STOMP_DESTINATION_HEADER, translated);
+        }
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+}
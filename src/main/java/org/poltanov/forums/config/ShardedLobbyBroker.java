@@ -0,0 +1,222 @@
+package org.poltanov.forums.config;
+
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Брокер сообщений для адресов лобби ({@code /topic/lobby/{id}/...}), разделённый по лобби.
+ * <p>
+ * Лобби распределяются между {@code workers} однопоточными исполнителями по ID лобби, поэтому все события одного
+ * лобби обрабатываются одним потоком в порядке поступления, а разные лобби — параллельно. Каждый исполнитель
+ * владеет своей частью индекса подписок «точный адрес → сессии и подписки», так что рассылка не сопоставляет
+ * адрес с шаблонами и не требует блокировок.
+ * </p>
+ * Брокер не отвечает на {@code CONNECT} и не отправляет heartbeat: это делает {@code SimpleBroker},
+ * который в этом режиме обслуживает остальные адреса {@code /topic}.
+ */
+public class ShardedLobbyBroker extends AbstractBrokerMessageHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedLobbyBroker.class);
+
+    /**
+     * Префикс адресов, которые обслуживает брокер.
+     */
+    public static final String LOBBY_PREFIX = "/topic/lobby/";
+
+    private final Shard[] shards;
+
+    /**
+     * Подписки каждой сессии: ID подписки → адрес. Нужны для отписки и отключения, в которых нет адреса.
+     */
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор для создания экземпляра {@link ShardedLobbyBroker}.
+     *
+     * @param clientInboundChannel  канал входящих сообщений клиентов
+     * @param clientOutboundChannel канал исходящих сообщений клиентам
+     * @param brokerChannel         канал сообщений, отправленных приложением
+     * @param workers               количество однопоточных исполнителей
+     * @param queueCapacity         максимальное количество задач в очереди одного исполнителя
+     * @param virtualThreads        выполнять ли исполнители в виртуальных потоках, если JVM их поддерживает
+     */
+    public ShardedLobbyBroker(SubscribableChannel clientInboundChannel, MessageChannel clientOutboundChannel,
+                              SubscribableChannel brokerChannel, int workers, int queueCapacity,
+                              boolean virtualThreads) {
+        super(clientInboundChannel, clientOutboundChannel, brokerChannel, List.of(LOBBY_PREFIX));
+        ThreadFactory threadFactory = ThreadFactories.named("lobby-broker-", virtualThreads);
+        this.shards = new Shard[Math.max(1, workers)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(threadFactory, queueCapacity);
+        }
+    }
+
+    @Override
+    protected void startInternal() {
+        publishBrokerAvailableEvent();
+        logger.info("Брокер лобби запущен: {} исполнителей", shards.length);
+    }
+
+    @Override
+    protected void stopInternal() {
+        publishBrokerUnavailableEvent();
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+
+        if (SimpMessageType.MESSAGE.equals(messageType)) {
+            if (checkDestinationPrefix(destination)) {
+                shardFor(destination).deliver(destination, message);
+            }
+        } else if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
+            if (checkDestinationPrefix(destination) && sessionId != null && subscriptionId != null) {
+                sessionSubscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                        .put(subscriptionId, destination);
+                shardFor(destination).execute(shard -> shard.subscribe(destination, sessionId, subscriptionId));
+            }
+        } else if (SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
+            Map<String, String> subscriptions = sessionId != null ? sessionSubscriptions.get(sessionId) : null;
+            String subscribed = subscriptions != null && subscriptionId != null ? subscriptions.remove(subscriptionId) : null;
+            if (subscribed != null) {
+                shardFor(subscribed).execute(shard -> shard.unsubscribe(subscribed, sessionId, subscriptionId));
+            }
+        } else if (SimpMessageType.DISCONNECT.equals(messageType)) {
+            Map<String, String> subscriptions = sessionId != null ? sessionSubscriptions.remove(sessionId) : null;
+            if (subscriptions != null) {
+                subscriptions.forEach((id, subscribed) ->
+                        shardFor(subscribed).execute(shard -> shard.unsubscribe(subscribed, sessionId, id)));
+            }
+        }
+    }
+
+    /**
+     * Выбирает исполнителя по ID лобби из адреса, чтобы все адреса одного лобби попадали к одному исполнителю.
+     *
+     * @param destination адрес вида {@code /topic/lobby/{id}/...}
+     * @return исполнитель лобби
+     */
+    private Shard shardFor(String destination) {
+        int end = destination.indexOf('/', LOBBY_PREFIX.length());
+        String lobby = destination.substring(LOBBY_PREFIX.length(), end < 0 ? destination.length() : end);
+        return shards[Math.floorMod(lobby.hashCode(), shards.length)];
+    }
+
+    /**
+     * Однопоточный исполнитель и принадлежащая ему часть индекса подписок.
+     * Индекс изменяется и читается только потоком исполнителя.
+     */
+    private final class Shard {
+
+        private final ThreadPoolExecutor executor;
+        private final int queueCapacity;
+        private final Map<String, Map<String, Set<String>>> subscribers = new HashMap<>();
+
+        Shard(ThreadFactory threadFactory, int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+        }
+
+        /**
+         * Ставит в очередь изменение индекса подписок. Такие задачи не отбрасываются,
+         * иначе индекс разойдётся с состоянием сессий.
+         */
+        void execute(Consumer<Shard> task) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.accept(this);
+                    } catch (Exception e) {
+                        logger.error("Ошибка в брокере лобби: {}", e.getMessage(), e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Брокер лобби остановлен, задача отброшена");
+            }
+        }
+
+        /**
+         * Ставит в очередь рассылку события. При переполнении очереди событие отбрасывается.
+         */
+        void deliver(String destination, Message<?> message) {
+            if (executor.getQueue().size() >= queueCapacity) {
+                logger.warn("Очередь брокера лобби переполнена, событие для {} отброшено", destination);
+                return;
+            }
+            execute(shard -> shard.send(destination, message));
+        }
+
+        void subscribe(String destination, String sessionId, String subscriptionId) {
+            subscribers.computeIfAbsent(destination, d -> new HashMap<>())
+                    .computeIfAbsent(sessionId, s -> new LinkedHashSet<>())
+                    .add(subscriptionId);
+        }
+
+        void unsubscribe(String destination, String sessionId, String subscriptionId) {
+            Map<String, Set<String>> sessions = subscribers.get(destination);
+            if (sessions == null) {
+                return;
+            }
+            Set<String> ids = sessions.get(sessionId);
+            if (ids != null && ids.remove(subscriptionId) && ids.isEmpty()) {
+                sessions.remove(sessionId);
+                if (sessions.isEmpty()) {
+                    subscribers.remove(destination);
+                }
+            }
+        }
+
+        void send(String destination, Message<?> message) {
+            Map<String, Set<String>> sessions = subscribers.get(destination);
+            if (sessions == null) {
+                return;
+            }
+            Object payload = message.getPayload();
+            sessions.forEach((sessionId, ids) -> {
+                for (String subscriptionId : ids) {
+                    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                    accessor.setSessionId(sessionId);
+                    accessor.setSubscriptionId(subscriptionId);
+                    accessor.copyHeadersIfAbsent(message.getHeaders());
+                    accessor.setLeaveMutable(true);
+                    try {
+                        getClientOutboundChannelForSession(sessionId).send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+                    } catch (Exception e) {
+                        logger.error("Не удалось отправить сообщение сессии {}: {}", sessionId, e.getMessage());
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.poltanov.forums.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Конфигурация потоков выполнения.
+ * <p>
+ * Профиль {@code virtual-threads} включает {@code spring.threads.virtual.enabled}: на Java 21 и новее Tomcat,
+ * каналы STOMP и собственные исполнители приложения работают на виртуальных потоках, на более старых JVM
+ * свойство игнорируется с предупреждением. Чтобы виртуальные потоки не перегружали базу данных, при
+ * {@code chat.datasource.max-concurrency > 0} источник данных оборачивается в {@link BoundedDataSource}.
+ * </p>
+ */
+@Configuration
+public class ThreadingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadingConfig.class);
+
+    /**
+     * Конструктор для создания экземпляра {@link ThreadingConfig}.
+     *
+     * @param virtualThreads запрошены ли виртуальные потоки
+     */
+    public ThreadingConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads && !ThreadFactories.virtualThreadsSupported()) {
+            logger.warn("Виртуальные потоки требуют Java 21 или новее, используются обычные потоки (Java {})",
+                    Runtime.version().feature());
+        } else if (virtualThreads) {
+            logger.info("Используются виртуальные потоки");
+        }
+    }
+
+    /**
+     * Ограничивает количество одновременно выданных соединений с базой данных.
+     *
+     * @param maxConcurrency   максимальное количество одновременно выданных соединений; {@code 0} — без ограничения
+     * @param acquireTimeoutMs максимальное время ожидания соединения в миллисекундах
+     * @param meterRegistry    реестр метрик
+     * @return постпроцессор, оборачивающий источник данных
+     */
+    @Bean
+    public static BeanPostProcessor boundedDataSourcePostProcessor(
+            @Value("${chat.datasource.max-concurrency:0}") int maxConcurrency,
+            @Value("${chat.datasource.acquire-timeout-ms:30000}") long acquireTimeoutMs,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (maxConcurrency <= 0 || !(bean instanceof DataSource dataSource) || bean instanceof BoundedDataSource) {
+                    return bean;
+                }
+                BoundedDataSource bounded = new BoundedDataSource(dataSource, maxConcurrency, acquireTimeoutMs);
+                meterRegistry.ifAvailable(registry -> Gauge.builder("chat.datasource.waiting", bounded, BoundedDataSource::getWaiting)
+                        .description("Потоки, ожидающие соединения с базой данных")
+                        .register(registry));
+                logger.info("Одновременных соединений с базой данных не больше {}", maxConcurrency);
+                return bounded;
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package org.poltanov.forums.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Конфигурация Spring MVC для приложения.
+ * Подключает ограничение частоты запросов к REST-эндпоинтам отправки сообщений и создания лобби.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    /**
+     * Конструктор для создания экземпляра WebMvcConfig.
+     *
+     * @param rateLimitInterceptor перехватчик, ограничивающий частоту запросов пользователей
+     */
+    public WebMvcConfig(RateLimitInterceptor rateLimitInterceptor) {
+        this.rateLimitInterceptor = rateLimitInterceptor;
+    }
+
+    /**
+     * Регистрирует перехватчики запросов.
+     *
+     * @param registry объект {@link InterceptorRegistry} для регистрации перехватчиков
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/messages/send", "/lobby/create");
+    }
+}
@@ -1,5 +1,6 @@
 package org.poltanov.forums.config;
 
+import jakarta.servlet.DispatcherType;
 import org.poltanov.forums.service.UserDetailsServiceImpl;
 import org.poltanov.forums.util.JwtRequestFilter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -89,10 +90,14 @@ public class WebSecurityConfig {
         http
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // Запрос уже проверен при первичной обработке; повторная асинхронная обработка
+                        // (например, поток выгрузки истории) идёт без JWT-фильтра.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/", "/index.html", "/login.html", "/register.html",
                                 "/static/**", "/css/**", "/js/**", "/images/**",
-                                "/favicon.ico", "/auth/**", "/ws/**", "/error"
+                                "/favicon.ico", "/auth/**", "/ws/**", "/ws-native", "/error",
+                                "/actuator/health"
                         ).permitAll()
                         .requestMatchers("/lobby/create").authenticated()
                         .anyRequest().authenticated()
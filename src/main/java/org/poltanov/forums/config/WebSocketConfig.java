@@ -1,26 +1,101 @@
 package org.poltanov.forums.config;
 
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.web.socket.config.annotation.*;
 
 /**
  * Конфигурация WebSocket для приложения.
  * Настраивает брокер сообщений и конечные точки STOMP.
+ * <p>
+ * Режим брокера задаётся свойством {@code chat.broker.mode}: {@code simple} — встроенный брокер в памяти узла,
+ * {@code relay} — ретрансляция {@code /topic} во внешний STOMP-брокер (например, RabbitMQ с плагином STOMP),
+ * через который сообщения доходят до подписчиков на всех узлах (адреса во внешнем брокере записываются через точку,
+ * см. {@link RelayDestinations}), {@code postgres} — встроенный брокер
+ * и обмен событиями между узлами через PostgreSQL {@code LISTEN/NOTIFY}, {@code sharded} — {@link ShardedLobbyBroker}
+ * для адресов лобби и встроенный брокер для {@code /topic/lobbies}.
+ * </p>
+ * Конечная точка {@code /ws} работает через SockJS и передаёт события в JSON. Конечная точка {@code /ws-native}
+ * принимает только WebSocket без SockJS и по умолчанию передаёт события двоичными кадрами в CBOR
+ * (см. {@link BinaryFrameEncoding}).
+ * <p>
+ * При {@code spring.threads.virtual.enabled=true} на Java 21 и новее каналы входящих и исходящих сообщений
+ * клиентов выполняют каждое сообщение в отдельном виртуальном потоке. Порядок сообщений каждой сессии
+ * при этом сохраняется явно ({@code preserveReceiveOrder} и {@code preservePublishOrder}).
+ * </p>
+ * Отправка сообщений через {@code /app/chat.sendMessage} ограничена по частоте {@link RateLimitInterceptor};
+ * об отклонённых кадрах сессия узнаёт из {@code /user/queue/errors}, поэтому брокер обслуживает и {@code /queue}.
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+
     private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    private final OutboundSessionPolicy outboundSessionPolicy;
+    private final BinaryFrameEncoding binaryFrameEncoding;
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${chat.broker.sharded.workers:0}")
+    private int shardedWorkers;
+
+    @Value("${chat.broker.sharded.queue-capacity:10000}")
+    private int shardedQueueCapacity;
+
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${chat.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${chat.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${chat.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${chat.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
 
     /**
      * Конструктор для создания экземпляра WebSocketConfig.
      *
      * @param jwtHandshakeInterceptor перехватчик рукопожатия для проверки JWT-токенов
+     * @param outboundSessionPolicy   политика отправки исходящих кадров сессий
+     * @param binaryFrameEncoding     двоичное кодирование событий для {@code /ws-native}
+     * @param rateLimitInterceptor    перехватчик, ограничивающий частоту отправки сообщений
      */
-    public WebSocketConfig(JwtHandshakeInterceptor jwtHandshakeInterceptor) {
+    public WebSocketConfig(JwtHandshakeInterceptor jwtHandshakeInterceptor, OutboundSessionPolicy outboundSessionPolicy,
+                           BinaryFrameEncoding binaryFrameEncoding, RateLimitInterceptor rateLimitInterceptor) {
         this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+        this.outboundSessionPolicy = outboundSessionPolicy;
+        this.binaryFrameEncoding = binaryFrameEncoding;
+        this.rateLimitInterceptor = rateLimitInterceptor;
     }
 
     /**
@@ -30,8 +105,100 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        if (isRelay()) {
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode);
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            config.configureBrokerChannel().interceptors(RelayDestinations.inbound());
+            logger.info("Используется внешний STOMP-брокер {}:{}", relayHost, relayPort);
+        } else if ("sharded".equalsIgnoreCase(brokerMode)) {
+            config.enableSimpleBroker("/topic/lobbies", "/queue");
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
+        config.setPreservePublishOrder(useVirtualThreads());
+    }
+
+    private boolean isRelay() {
+        return "relay".equalsIgnoreCase(brokerMode);
+    }
+
+    private boolean useVirtualThreads() {
+        return virtualThreads && ThreadFactories.virtualThreadsSupported();
+    }
+
+    /**
+     * Создаёт брокер адресов лобби для режима {@code chat.broker.mode=sharded}.
+     *
+     * @param clientInboundChannel  канал входящих сообщений клиентов
+     * @param clientOutboundChannel канал исходящих сообщений клиентам
+     * @param brokerChannel         канал сообщений, отправленных приложением
+     * @return брокер адресов лобби
+     */
+    @Bean
+    @ConditionalOnProperty(name = "chat.broker.mode", havingValue = "sharded")
+    public ShardedLobbyBroker shardedLobbyBroker(@Qualifier("clientInboundChannel") SubscribableChannel clientInboundChannel,
+                                                 @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                                                 @Qualifier("brokerChannel") SubscribableChannel brokerChannel) {
+        int workers = shardedWorkers > 0 ? shardedWorkers : Runtime.getRuntime().availableProcessors();
+        ShardedLobbyBroker broker = new ShardedLobbyBroker(clientInboundChannel, clientOutboundChannel, brokerChannel,
+                workers, shardedQueueCapacity, virtualThreads);
+        broker.setPreservePublishOrder(useVirtualThreads());
+        return broker;
+    }
+
+    /**
+     * Подключает пакетную запись и ограничение очереди исходящих кадров для каждой сессии.
+     *
+     * @param registration объект {@link WebSocketTransportRegistration} для настройки транспорта
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(outboundSessionPolicy);
+    }
+
+    /**
+     * Подключает ограничение частоты отправки сообщений и переводит канал входящих сообщений клиентов
+     * на виртуальные потоки, если они включены.
+     *
+     * @param registration объект {@link ChannelRegistration} для настройки канала входящих сообщений
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(rateLimitInterceptor);
+        if (isRelay()) {
+            registration.interceptors(RelayDestinations.inbound());
+        }
+        TaskExecutor executor = useVirtualThreads() ? ThreadFactories.virtualTaskExecutor("ws-inbound-") : null;
+        if (executor != null) {
+            registration.executor(executor);
+        }
+    }
+
+    /**
+     * Подключает перекодирование исходящих событий в CBOR для сессий {@code /ws-native}
+     * и переводит канал на виртуальные потоки, если они включены.
+     *
+     * @param registration объект {@link ChannelRegistration} для настройки канала исходящих сообщений
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (isRelay()) {
+            registration.interceptors(RelayDestinations.outbound());
+        }
+        registration.interceptors(binaryFrameEncoding);
+        TaskExecutor executor = useVirtualThreads() ? ThreadFactories.virtualTaskExecutor("ws-outbound-") : null;
+        if (executor != null) {
+            registration.executor(executor);
+        }
     }
 
     /**
@@ -41,9 +208,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.setPreserveReceiveOrder(useVirtualThreads());
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .addInterceptors(jwtHandshakeInterceptor)
                 .withSockJS();
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(jwtHandshakeInterceptor, binaryFrameEncoding);
     }
 }
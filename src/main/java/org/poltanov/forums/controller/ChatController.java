@@ -1,10 +1,20 @@
 package org.poltanov.forums.controller;
 
+import org.poltanov.forums.dto.TypingRequest;
 import org.poltanov.forums.model.Message;
+import org.poltanov.forums.service.ChatMetrics;
+import org.poltanov.forums.service.LobbyTaskExecutor;
+import org.poltanov.forums.service.MessageBatchWriter;
 import org.poltanov.forums.service.MessageService;
+import org.poltanov.forums.service.TypingIndicatorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
+import java.util.Map;
+
 /**
  * Контроллер для обработки сообщений чата.
  * Обрабатывает отправку и распространение сообщений между пользователями.
@@ -13,26 +23,101 @@ import org.springframework.stereotype.Controller;
 public class ChatController {
 
     private final MessageService messageService;
+    private final MessageBatchWriter messageBatchWriter;
+    private final LobbyTaskExecutor lobbyTaskExecutor;
+    private final TypingIndicatorService typingIndicators;
+    private final ChatMetrics metrics;
+    private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
 
     /**
      * Конструктор для создания экземпляра ChatController.
      *
-     * @param messageService сервис для обработки сообщений
+     * @param messageService     сервис для обработки сообщений
+     * @param messageBatchWriter пакетная запись сообщений с групповой фиксацией
+     * @param lobbyTaskExecutor  исполнитель, упорядочивающий обработку сообщений по лобби
+     * @param typingIndicators   индикаторы набора сообщения
+     * @param metrics            метрики пути отправки сообщения
      */
-    public ChatController(MessageService messageService) {
+    public ChatController(MessageService messageService, MessageBatchWriter messageBatchWriter,
+                          LobbyTaskExecutor lobbyTaskExecutor, TypingIndicatorService typingIndicators,
+                          ChatMetrics metrics) {
         this.messageService = messageService;
+        this.messageBatchWriter = messageBatchWriter;
+        this.lobbyTaskExecutor = lobbyTaskExecutor;
+        this.typingIndicators = typingIndicators;
+        this.metrics = metrics;
     }
 
     /**
      * Обрабатывает отправку сообщения в чат.
      * Сохраняет сообщение и распространяет его среди участников лобби.
+     * В пакетном режиме сообщение распространяется после фиксации пакета, в который оно попало, через очередь лобби,
+     * а не в потоке записи.
+     * Сообщения одного лобби обрабатываются по одному в порядке поступления через {@link LobbyTaskExecutor};
+     * если очередь лобби переполнена, сообщение отклоняется.
      *
      * @param message объект {@link Message}, содержащий информацию о сообщении
-     * @throws Exception если происходит ошибка при обработке сообщения
      */
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(Message message) throws Exception {
-        Message savedMessage = messageService.sendMessage(message.getText(), message.getSenderId(), message.getLobbyId());
-        messageService.broadcastMessage(savedMessage);
+    public void sendMessage(Message message) {
+        long received = metrics.start();
+        if (message.getLobbyId() != null && message.getSenderId() != null) {
+            typingIndicators.stop(message.getLobbyId(), message.getSenderId());
+        }
+        if (!lobbyTaskExecutor.execute(message.getLobbyId(), () -> saveAndBroadcast(message, received))) {
+            logger.warn("Очередь лобби {} переполнена, сообщение пользователя {} отклонено",
+                    message.getLobbyId(), message.getSenderId());
+        }
+    }
+
+    /**
+     * Обрабатывает сигнал о наборе сообщения. Сигнал не сохраняется и не проходит через очередь лобби.
+     * Пользователь определяется по сессии WebSocket, а не по телу сигнала.
+     *
+     * @param request        сигнал о наборе сообщения
+     * @param headerAccessor заголовки сообщения STOMP с атрибутами сессии
+     */
+    @MessageMapping("/chat.typing")
+    public void typing(TypingRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        if (request.getLobbyId() == null || attributes == null || !(attributes.get("userId") instanceof Long userId)) {
+            return;
+        }
+        if (request.isTyping()) {
+            typingIndicators.ping(request.getLobbyId(), userId);
+        } else {
+            typingIndicators.stop(request.getLobbyId(), userId);
+        }
+    }
+
+    private void saveAndBroadcast(Message message, long received) {
+        if (messageBatchWriter.isEnabled()) {
+            messageBatchWriter.submit(message.getText(), message.getSenderId(), message.getLobbyId())
+                    .whenComplete((savedMessage, error) -> {
+                        if (error != null) {
+                            logger.error("Сообщение не сохранено: {}", error.getMessage());
+                            return;
+                        }
+                        // Результаты завершаются потоком записи в порядке пакета; рассылка ставится в очередь лобби,
+                        // чтобы поток записи сразу переходил к следующему пакету, а порядок в лобби сохранялся.
+                        Runnable broadcast = () -> {
+                            messageService.broadcastMessage(savedMessage);
+                            metrics.stop(ChatMetrics.Stage.TOTAL, received);
+                        };
+                        if (!lobbyTaskExecutor.execute(savedMessage.getLobbyId(), broadcast)) {
+                            // Сообщение уже сохранено, поэтому при переполненной очереди оно рассылается сразу.
+                            broadcast.run();
+                        }
+                    });
+            return;
+        }
+
+        try {
+            Message savedMessage = messageService.sendMessage(message.getText(), message.getSenderId(), message.getLobbyId());
+            messageService.broadcastMessage(savedMessage);
+            metrics.stop(ChatMetrics.Stage.TOTAL, received);
+        } catch (Exception e) {
+            logger.error("Сообщение не сохранено: {}", e.getMessage(), e);
+        }
     }
 }
@@ -5,8 +5,8 @@ import org.poltanov.forums.exception.UnauthorizedException;
 import org.poltanov.forums.model.Lobby;
 import org.poltanov.forums.model.User;
 import org.poltanov.forums.repository.LobbyRepository;
-import org.poltanov.forums.repository.UserRepository;
 import org.poltanov.forums.service.LobbyService;
+import org.poltanov.forums.service.ReadCursorService;
 import org.poltanov.forums.service.UserDetailsServiceImpl;
 import org.poltanov.forums.exception.LobbyNotFoundException;
 import org.poltanov.forums.exception.NotInLobbyException;
@@ -19,8 +19,8 @@ import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Контроллер для управления лобби в приложении.
@@ -34,7 +34,7 @@ public class LobbyController {
     private final UserDetailsServiceImpl userDetailsService;
     private final SimpMessagingTemplate messagingTemplate;
     private final LobbyRepository lobbyRepository;
-    private final UserRepository userRepository;
+    private final ReadCursorService readCursorService;
     private static final Logger logger = LoggerFactory.getLogger(LobbyController.class);
 
     /**
@@ -44,15 +44,16 @@ public class LobbyController {
      * @param messagingTemplate  шаблон для отправки сообщений через WebSocket
      * @param userDetailsService сервис для получения деталей пользователя
      * @param lobbyRepository    репозиторий для доступа к данным лобби
-     * @param userRepository     репозиторий для доступа к данным пользователей
+     * @param readCursorService  сервис курсоров прочтения и непрочитанных сообщений
      */
     @Autowired
-    public LobbyController(LobbyService lobbyService, SimpMessagingTemplate messagingTemplate, UserDetailsServiceImpl userDetailsService, LobbyRepository lobbyRepository, UserRepository userRepository) {
+    public LobbyController(LobbyService lobbyService, SimpMessagingTemplate messagingTemplate, UserDetailsServiceImpl userDetailsService, LobbyRepository lobbyRepository,
+                           ReadCursorService readCursorService) {
         this.lobbyService = lobbyService;
         this.messagingTemplate = messagingTemplate;
         this.userDetailsService = userDetailsService;
         this.lobbyRepository = lobbyRepository;
-        this.userRepository = userRepository;
+        this.readCursorService = readCursorService;
     }
 
     /**
@@ -219,12 +220,57 @@ public class LobbyController {
         }
 
         List<LobbyUsers> participants = lobbyService.getParticipants(lobbyId);
-        List<LobbyUsers> participantDTOs = participants.stream().map(participant -> {
-            Optional<User> user = userRepository.findById(participant.getUserId());
-            String nickname = user.map(User::getNickname).orElse("Unknown");
-            return new LobbyUsers(participant.getUserId(), nickname);
-        }).collect(Collectors.toList());
+        return ResponseEntity.ok(participants);
+    }
+
+    /**
+     * Получение списка участников лобби, находящихся в сети.
+     *
+     * @param lobbyId ID лобби.
+     * @return Список участников в сети.
+     */
+    @GetMapping("/{lobbyId}/online")
+    public ResponseEntity<List<LobbyUsers>> getOnlineParticipants(@PathVariable Long lobbyId) {
+        return ResponseEntity.ok(lobbyService.getOnlineParticipants(lobbyId));
+    }
+
+    /**
+     * Сдвиг курсора прочтения текущего пользователя в лобби.
+     *
+     * @param lobbyId        ID лобби.
+     * @param request        Тело запроса с ID последнего прочитанного сообщения.
+     * @param authentication Объект аутентификации текущего пользователя.
+     * @return Ответ о результате операции.
+     */
+    @PostMapping("/{lobbyId}/read")
+    public ResponseEntity<?> markRead(@PathVariable Long lobbyId, @RequestBody ReadCursorRequest request,
+                                      Authentication authentication) {
+        Optional<User> userOpt = userDetailsService.getUserByUsername(authentication.getName());
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Пользователь не найден.");
+        }
+        if (request.getMessageId() == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("messageId не может быть null.");
+        }
+
+        readCursorService.markRead(userOpt.get().getId(), lobbyId, request.getMessageId());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Получение количества непрочитанных сообщений во всех лобби текущего пользователя.
+     *
+     * @param authentication Объект аутентификации текущего пользователя.
+     * @return Количество непрочитанных сообщений по ID лобби.
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<?> getUnreadCounts(Authentication authentication) {
+        Optional<User> userOpt = userDetailsService.getUserByUsername(authentication.getName());
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Пользователь не найден.");
+        }
 
-        return ResponseEntity.ok(participantDTOs);
+        Map<Long, Long> unread = readCursorService.getUnreadCounts(userOpt.get().getId());
+        return ResponseEntity.ok(unread);
     }
 }
@@ -1,17 +1,20 @@
 package org.poltanov.forums.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.poltanov.forums.dto.ChatMessage;
+import org.poltanov.forums.dto.MessagePage;
+import org.poltanov.forums.exception.LobbyNotFoundException;
 import org.poltanov.forums.model.Message;
-import org.poltanov.forums.model.User;
-import org.poltanov.forums.repository.UserRepository;
 import org.poltanov.forums.service.MessageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Контроллер для управления сообщениями в приложении.
@@ -21,19 +24,24 @@ import java.util.stream.Collectors;
 @RequestMapping("/messages")
 public class MessageController {
 
+    /**
+     * Тип ответа выгрузки истории: по одному JSON-объекту на строку.
+     */
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final MessageService messageService;
-    private final UserRepository userRepository;
+    private final ObjectWriter chatMessageWriter;
 
     /**
      * Конструктор для создания экземпляра MessageController.
      *
      * @param messageService сервис для обработки сообщений
-     * @param userRepository репозиторий для доступа к данным пользователей
+     * @param objectMapper   преобразователь объектов в JSON
      */
     @Autowired
-    public MessageController(MessageService messageService, UserRepository userRepository) {
+    public MessageController(MessageService messageService, ObjectMapper objectMapper) {
         this.messageService = messageService;
-        this.userRepository = userRepository;
+        this.chatMessageWriter = objectMapper.writerFor(ChatMessage.class);
     }
 
     /**
@@ -42,45 +50,70 @@ public class MessageController {
      * @param text     Текст сообщения.
      * @param senderId ID отправителя.
      * @param lobbyId  ID лобби, в которое отправляется сообщение.
-     * @return {@link ResponseEntity} с сохранённым сообщением или ошибкой при отправке.
+     * @return {@link ResponseEntity} с сохранённым сообщением, 404, если лобби не найдено или удалено,
+     * или ошибкой при отправке.
      */
     @PostMapping("/send")
     public ResponseEntity<?> sendMessage(@RequestParam String text, @RequestParam Long senderId, @RequestParam Long lobbyId) {
         try {
             Message message = messageService.sendMessage(text, senderId, lobbyId);
             return ResponseEntity.ok(message);
+        } catch (LobbyNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Лобби не найдено.");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Ошибка при отправке сообщения");
         }
     }
 
     /**
-     * Получение списка сообщений по ID лобби.
+     * Получение страницы сообщений лобби.
+     * Без курсоров возвращается самая новая страница; для прокрутки назад клиент передаёт
+     * {@code nextCursor} из предыдущего ответа в параметре {@code before}.
      *
      * @param lobbyId ID лобби, для которого необходимо получить сообщения.
-     * @return {@link ResponseEntity} со списком сообщений или ошибкой при получении.
+     * @param before  ID сообщения, старше которого нужно вернуть страницу.
+     * @param after   ID сообщения, новее которого нужно вернуть страницу.
+     * @param limit   Размер страницы.
+     * @return {@link ResponseEntity} со страницей {@link MessagePage}, 404, если лобби не найдено или удалено,
+     * или ошибкой при получении.
      */
     @GetMapping("/lobby/{lobbyId}")
-    public ResponseEntity<?> getMessagesByLobby(@PathVariable Long lobbyId) {
+    public ResponseEntity<?> getMessagesByLobby(@PathVariable Long lobbyId,
+                                                @RequestParam(required = false) Long before,
+                                                @RequestParam(required = false) Long after,
+                                                @RequestParam(defaultValue = "" + MessageService.DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Message> messages = messageService.getMessagesByLobby(lobbyId);
-
-            List<ChatMessage> chatMessages = messages.stream().map(message -> {
-                Optional<User> userOpt = userRepository.findById(message.getSenderId());
-                String senderNickname = userOpt.map(User::getNickname).orElse("Unknown");
-                return new ChatMessage(
-                        message.getId(),
-                        message.getText(),
-                        message.getSenderId(),
-                        senderNickname,
-                        message.getLobbyId(),
-                        message.getTimestamp()
-                );
-            }).collect(Collectors.toList());
-
-            return ResponseEntity.ok(chatMessages);
+            MessagePage page = messageService.getMessagesPage(lobbyId, before, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (LobbyNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Лобби не найдено.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Ошибка при получении сообщений.");
         }
     }
+
+    /**
+     * Выгрузка всей истории лобби в формате NDJSON: по одному {@link ChatMessage} на строку в порядке отправки.
+     * Сообщения пишутся в ответ по мере чтения из базы данных, поэтому выгрузка подходит для лобби любого размера.
+     *
+     * @param lobbyId ID лобби, историю которого нужно выгрузить.
+     * @return {@link ResponseEntity} с потоком сообщений.
+     * @throws LobbyNotFoundException Если лобби не найдено или помечено удалённым.
+     */
+    @GetMapping("/lobby/{lobbyId}/export")
+    public ResponseEntity<StreamingResponseBody> exportMessages(@PathVariable Long lobbyId) {
+        // Проверяется до начала ответа; LobbyNotFoundException превращается в 404 в GlobalExceptionHandler.
+        messageService.requireActiveLobby(lobbyId);
+        StreamingResponseBody body = out -> messageService.exportMessages(lobbyId, message -> {
+            out.write(chatMessageWriter.writeValueAsBytes(message));
+            out.write('\n');
+        });
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("lobby-" + lobbyId + ".ndjson").build().toString())
+                .body(body);
+    }
 }
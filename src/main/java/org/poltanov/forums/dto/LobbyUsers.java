@@ -5,7 +5,7 @@ import lombok.Setter;
 
 /**
  * DTO класс для представления участников лобби.
- * Содержит идентификатор пользователя и его никнейм.
+ * Содержит идентификатор пользователя, его никнейм и признак присутствия в сети.
  */
 @Setter
 @Getter
@@ -21,6 +21,11 @@ public class LobbyUsers {
      */
     private String nickname;
 
+    /**
+     * Находится ли пользователь в сети в этом лобби.
+     */
+    private boolean online;
+
     /**
      * Конструктор по умолчанию.
      */
@@ -36,4 +41,17 @@ public class LobbyUsers {
         this.userId = userId;
         this.nickname = nickname;
     }
+
+    /**
+     * Конструктор для создания экземпляра LobbyUsers с указанными параметрами.
+     *
+     * @param userId    Идентификатор пользователя.
+     * @param nickname  Никнейм пользователя.
+     * @param online    Находится ли пользователь в сети.
+     */
+    public LobbyUsers(Long userId, String nickname, boolean online) {
+        this.userId = userId;
+        this.nickname = nickname;
+        this.online = online;
+    }
 }
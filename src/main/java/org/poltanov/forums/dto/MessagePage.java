@@ -0,0 +1,49 @@
+package org.poltanov.forums.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * DTO класс для страницы истории сообщений лобби.
+ * Содержит сообщения страницы в порядке отправки и курсор для загрузки следующей страницы.
+ */
+@Setter
+@Getter
+public class MessagePage {
+
+    /**
+     * Сообщения страницы, упорядоченные по возрастанию идентификатора.
+     */
+    private List<ChatMessage> messages;
+
+    /**
+     * Идентификатор сообщения, который передаётся как {@code before} (или {@code after})
+     * для получения следующей страницы. {@code null}, если страница пуста.
+     */
+    private Long nextCursor;
+
+    /**
+     * Признак того, что в выбранном направлении есть ещё сообщения.
+     */
+    private boolean hasMore;
+
+    /**
+     * Конструктор по умолчанию.
+     */
+    public MessagePage() {}
+
+    /**
+     * Конструктор для создания экземпляра MessagePage с указанными параметрами.
+     *
+     * @param messages   Сообщения страницы.
+     * @param nextCursor Курсор для загрузки следующей страницы.
+     * @param hasMore    Признак наличия следующей страницы.
+     */
+    public MessagePage(List<ChatMessage> messages, Long nextCursor, boolean hasMore) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,41 @@
+package org.poltanov.forums.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * DTO класс для уведомления об изменении присутствия участников лобби в сети.
+ * Содержит пользователей, которые появились в сети и вышли из сети за окно накопления изменений.
+ */
+@Setter
+@Getter
+public class PresenceChangedMessage {
+
+    /**
+     * Тип сообщения. По умолчанию устанавливается значение "PRESENCE_CHANGED".
+     */
+    private String type = "PRESENCE_CHANGED";
+
+    /**
+     * Идентификаторы пользователей, которые появились в сети.
+     */
+    private List<Long> online;
+
+    /**
+     * Идентификаторы пользователей, которые вышли из сети.
+     */
+    private List<Long> offline;
+
+    /**
+     * Конструктор для создания экземпляра PresenceChangedMessage с указанными параметрами.
+     *
+     * @param online  Пользователи, которые появились в сети.
+     * @param offline Пользователи, которые вышли из сети.
+     */
+    public PresenceChangedMessage(List<Long> online, List<Long> offline) {
+        this.online = online;
+        this.offline = offline;
+    }
+}
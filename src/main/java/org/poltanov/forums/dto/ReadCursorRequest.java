@@ -0,0 +1,19 @@
+package org.poltanov.forums.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO класс для запроса сдвига курсора прочтения.
+ * Содержит идентификатор последнего прочитанного сообщения лобби.
+ */
+@Setter
+@Getter
+public class ReadCursorRequest {
+
+    /**
+     * Идентификатор последнего прочитанного сообщения.
+     */
+    private Long messageId;
+
+}
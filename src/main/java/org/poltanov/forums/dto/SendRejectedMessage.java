@@ -0,0 +1,46 @@
+package org.poltanov.forums.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO класс для уведомления клиента об отклонённом кадре {@code SEND}.
+ * Отправляется в {@code /user/queue/errors} только сессии, кадр которой отклонён; сама сессия остаётся открытой.
+ */
+@Setter
+@Getter
+public class SendRejectedMessage {
+
+    /**
+     * Тип сообщения. По умолчанию устанавливается значение "SEND_REJECTED".
+     */
+    private String type = "SEND_REJECTED";
+
+    /**
+     * Адрес отклонённого кадра.
+     */
+    private String destination;
+
+    /**
+     * Причина отклонения.
+     */
+    private String message;
+
+    /**
+     * Время в миллисекундах, через которое отправка будет принята.
+     */
+    private long retryAfterMs;
+
+    /**
+     * Конструктор для создания экземпляра SendRejectedMessage с указанными параметрами.
+     *
+     * @param destination  Адрес отклонённого кадра.
+     * @param message      Причина отклонения.
+     * @param retryAfterMs Время в миллисекундах, через которое отправка будет принята.
+     */
+    public SendRejectedMessage(String destination, String message, long retryAfterMs) {
+        this.destination = destination;
+        this.message = message;
+        this.retryAfterMs = retryAfterMs;
+    }
+}
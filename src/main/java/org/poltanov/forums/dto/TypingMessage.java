@@ -0,0 +1,34 @@
+package org.poltanov.forums.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * DTO класс для уведомления о пользователях, набирающих сообщение в лобби.
+ * Содержит полный текущий список набирающих, поэтому каждое уведомление заменяет предыдущее.
+ */
+@Setter
+@Getter
+public class TypingMessage {
+
+    /**
+     * Тип сообщения. По умолчанию устанавливается значение "TYPING".
+     */
+    private String type = "TYPING";
+
+    /**
+     * Пользователи, набирающие сообщение.
+     */
+    private List<LobbyUsers> users;
+
+    /**
+     * Конструктор для создания экземпляра TypingMessage с указанными параметрами.
+     *
+     * @param users Пользователи, набирающие сообщение.
+     */
+    public TypingMessage(List<LobbyUsers> users) {
+        this.users = users;
+    }
+}
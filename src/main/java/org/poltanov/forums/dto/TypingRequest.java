@@ -0,0 +1,24 @@
+package org.poltanov.forums.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO класс для сигнала о наборе сообщения.
+ * Содержит идентификатор лобби и признак того, что пользователь продолжает набор.
+ */
+@Setter
+@Getter
+public class TypingRequest {
+
+    /**
+     * Идентификатор лобби, в котором пользователь набирает сообщение.
+     */
+    private Long lobbyId;
+
+    /**
+     * Продолжает ли пользователь набор. {@code false} — набор завершён, например сообщение отправлено.
+     */
+    private boolean typing = true;
+
+}
@@ -1,5 +1,6 @@
 package org.poltanov.forums.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -44,4 +45,19 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleUnauthorizedException(UnauthorizedException ex) {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ex.getMessage());
     }
+
+    /**
+     * Обрабатывает исключение {@link RateLimitExceededException}.
+     *
+     * @param ex экземпляр {@link RateLimitExceededException}, которое было выброшено
+     * @return {@link ResponseEntity} с HTTP-статусом 429 (TOO_MANY_REQUESTS), заголовком {@code Retry-After}
+     * и сообщением об ошибке
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<String> handleRateLimitExceededException(RateLimitExceededException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfterMs() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(ex.getMessage());
+    }
 }
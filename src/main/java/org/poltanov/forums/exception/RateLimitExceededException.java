@@ -0,0 +1,26 @@
+package org.poltanov.forums.exception;
+
+import lombok.Getter;
+
+/**
+ * Исключение, выбрасываемое при превышении пользователем допустимой частоты запросов.
+ */
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+
+    /**
+     * Время в миллисекундах, через которое запрос будет принят.
+     */
+    private final long retryAfterMs;
+
+    /**
+     * Конструктор для создания экземпляра {@link RateLimitExceededException} с указанным сообщением.
+     *
+     * @param message      Сообщение об ошибке.
+     * @param retryAfterMs Время в миллисекундах, через которое запрос будет принят.
+     */
+    public RateLimitExceededException(String message, long retryAfterMs) {
+        super(message);
+        this.retryAfterMs = retryAfterMs;
+    }
+}
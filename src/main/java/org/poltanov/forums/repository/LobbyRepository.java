@@ -1,16 +1,50 @@
 package org.poltanov.forums.repository;
 
 import org.poltanov.forums.model.Lobby;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Репозиторий для управления сущностями {@link Lobby}.
  * Предоставляет CRUD операции для объектов {@link Lobby} с использованием {@link CrudRepository}.
+ * Лобби, помеченные удалёнными, возвращаются только методами {@link CrudRepository}.
  *
  * @see CrudRepository
  * @see Lobby
  */
 @Repository
 public interface LobbyRepository extends CrudRepository<Lobby, Long> {
+
+    /**
+     * Находит лобби, не помеченное удалённым.
+     *
+     * @param id ID лобби
+     * @return {@link Optional} лобби, если оно найдено и не удалено, иначе пустой
+     */
+    @Query("SELECT id, name, creator_id FROM lobbies WHERE id = :id AND deleted_at IS NULL")
+    Optional<Lobby> findActiveById(@Param("id") Long id);
+
+    /**
+     * Возвращает все лобби, не помеченные удалёнными.
+     *
+     * @return список лобби по возрастанию ID
+     */
+    @Query("SELECT id, name, creator_id FROM lobbies WHERE deleted_at IS NULL ORDER BY id")
+    List<Lobby> findAllActive();
+
+    /**
+     * Помечает лобби удалённым. Данные лобби удаляет {@code LobbyReaper}.
+     *
+     * @param id ID лобби
+     * @return {@code true}, если лобби было помечено этим вызовом
+     */
+    @Modifying
+    @Query("UPDATE lobbies SET deleted_at = now() WHERE id = :id AND deleted_at IS NULL")
+    boolean markDeleted(@Param("id") Long id);
 }
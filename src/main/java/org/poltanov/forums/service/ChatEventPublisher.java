@@ -0,0 +1,158 @@
+package org.poltanov.forums.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.poltanov.forums.dto.ChatMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Единая точка рассылки событий чата подписчикам WebSocket.
+ * <p>
+ * Событие доставляется подписчикам текущего узла через {@link SimpMessagingTemplate}, а в режиме
+ * {@code chat.broker.mode=postgres} дополнительно публикуется в {@link PostgresNotifyBackplane}
+ * для доставки подписчикам остальных узлов.
+ * </p>
+ * Событие преобразуется в JSON один раз. Полученный массив байтов неизменяем и разделяется брокером между всеми
+ * подписчиками адреса, а также используется как тело события для других узлов, поэтому конвертер
+ * {@link SimpMessagingTemplate} в этом пути не участвует.
+ */
+@Service
+public class ChatEventPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RecentMessageBuffer recentMessages;
+    private final ReadCursorService readCursors;
+    private final PostgresNotifyBackplane backplane;
+    private final ObjectMapper objectMapper;
+    private final ChatMetrics metrics;
+
+    /**
+     * Конструктор для создания экземпляра {@link ChatEventPublisher}.
+     *
+     * @param messagingTemplate шаблон для отправки сообщений через WebSocket
+     * @param recentMessages    буфер последних сообщений активных лобби
+     * @param readCursors       курсоры прочтения и счётчики непрочитанных сообщений
+     * @param backplane         канал событий между узлами через PostgreSQL
+     * @param objectMapper      преобразователь событий в JSON
+     * @param metrics           метрики пути отправки сообщения
+     */
+    public ChatEventPublisher(SimpMessagingTemplate messagingTemplate, RecentMessageBuffer recentMessages,
+                              ReadCursorService readCursors, PostgresNotifyBackplane backplane,
+                              ObjectMapper objectMapper, ChatMetrics metrics) {
+        this.messagingTemplate = messagingTemplate;
+        this.recentMessages = recentMessages;
+        this.readCursors = readCursors;
+        this.backplane = backplane;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Создаёт сообщение для брокера с готовым JSON-телом, которое не требует преобразования.
+     *
+     * @param json тело события в формате JSON; не должно изменяться после вызова
+     * @return сообщение для {@link SimpMessagingTemplate#send}
+     */
+    public static Message<byte[]> jsonMessage(byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Возвращает адрес подписки на сообщения лобби.
+     *
+     * @param lobbyId ID лобби
+     * @return адрес подписки
+     */
+    public static String lobbyMessagesDestination(Long lobbyId) {
+        return "/topic/lobby/" + lobbyId + "/messages";
+    }
+
+    /**
+     * Возвращает адрес подписки на изменения состава участников лобби.
+     *
+     * @param lobbyId ID лобби
+     * @return адрес подписки
+     */
+    public static String lobbyParticipantsDestination(Long lobbyId) {
+        return "/topic/lobby/" + lobbyId + "/participants";
+    }
+
+    /**
+     * Возвращает адрес подписки на список пользователей, набирающих сообщение в лобби.
+     *
+     * @param lobbyId ID лобби
+     * @return адрес подписки
+     */
+    public static String lobbyTypingDestination(Long lobbyId) {
+        return "/topic/lobby/" + lobbyId + "/typing";
+    }
+
+    /**
+     * Рассылает новое сообщение чата, добавляет его в буфер последних сообщений
+     * и учитывает в счётчиках непрочитанных сообщений.
+     *
+     * @param message сообщение с открытым текстом; не должно изменяться после вызова
+     */
+    public void publishMessage(ChatMessage message) {
+        recordMessage(message);
+        String destination = lobbyMessagesDestination(message.getLobbyId());
+        long serializeStarted = metrics.start();
+        byte[] json = toJson(message);
+        metrics.stop(ChatMetrics.Stage.SERIALIZE, serializeStarted);
+        long publishStarted = metrics.start();
+        messagingTemplate.send(destination, jsonMessage(json));
+        backplane.publishMessage(destination, message, json);
+        metrics.stop(ChatMetrics.Stage.PUBLISH, publishStarted);
+    }
+
+    /**
+     * Добавляет новое сообщение в буфер последних сообщений и учитывает в счётчиках непрочитанных сообщений
+     * без рассылки. Используется для сообщений, сохранённых через REST.
+     *
+     * @param message сообщение с открытым текстом; не должно изменяться после вызова
+     */
+    public void recordMessage(ChatMessage message) {
+        recentMessages.append(message);
+        readCursors.onMessage(message);
+    }
+
+    /**
+     * Рассылает событие по указанному адресу.
+     *
+     * @param destination адрес подписки
+     * @param event       событие
+     */
+    public void publish(String destination, Object event) {
+        byte[] json = toJson(event);
+        messagingTemplate.send(destination, jsonMessage(json));
+        backplane.publish(destination, json);
+    }
+
+    /**
+     * Рассылает кратковременное событие только через брокер, минуя {@link PostgresNotifyBackplane}.
+     * Подходит для событий, потеря которых не важна и которые не должны нагружать базу данных.
+     *
+     * @param destination адрес подписки
+     * @param event       событие
+     */
+    public void publishTransient(String destination, Object event) {
+        messagingTemplate.send(destination, jsonMessage(toJson(event)));
+    }
+
+    private byte[] toJson(Object event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось преобразовать событие в JSON: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.poltanov.forums.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики пути отправки сообщения: от получения кадра STOMP до передачи события брокеру.
+ * <p>
+ * Время каждого этапа записывается в таймер {@code chat.message.stage} с тегом {@code stage} и гистограммой
+ * процентилей, которую можно собрать через {@code /actuator/prometheus}. Отправленные сообщения считаются
+ * в {@code chat.messages.sent}. Теги метрик не содержат ID лобби, сессий и пользователей: по ним можно было бы
+ * восстановить, кто и когда переписывается.
+ * </p>
+ * Этапы замеряются парой {@link #start()} и {@link #stop(Stage, long)} без создания объектов на сообщение.
+ * При {@code chat.metrics.enabled=false} метрики не регистрируются, а эти вызовы сводятся к проверке флага.
+ */
+@Component
+public class ChatMetrics {
+
+    /**
+     * Этапы пути отправки сообщения.
+     */
+    public enum Stage {
+
+        /**
+         * Шифрование текста перед записью.
+         */
+        ENCRYPT("encrypt"),
+
+        /**
+         * Запись сообщения в базу данных.
+         */
+        INSERT("insert"),
+
+        /**
+         * Получение никнейма отправителя.
+         */
+        NICKNAME("nickname"),
+
+        /**
+         * Расшифровка сообщений истории.
+         */
+        DECRYPT("decrypt"),
+
+        /**
+         * Преобразование события в JSON.
+         */
+        SERIALIZE("serialize"),
+
+        /**
+         * Передача события брокеру и в канал между узлами.
+         */
+        PUBLISH("publish"),
+
+        /**
+         * Весь путь от получения кадра до передачи события брокеру, включая ожидание в очереди лобби.
+         */
+        TOTAL("total");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    private final Counter sent;
+
+    /**
+     * Конструктор для создания экземпляра {@link ChatMetrics}.
+     *
+     * @param meterRegistry реестр метрик
+     * @param enabled       записывать ли метрики
+     */
+    public ChatMetrics(MeterRegistry meterRegistry,
+                       @Value("${chat.metrics.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            this.sent = null;
+            return;
+        }
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("chat.message.stage")
+                    .description("Время этапа отправки сообщения")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.sent = Counter.builder("chat.messages.sent")
+                .description("Отправленные сообщения")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает метку начала этапа.
+     *
+     * @return текущее время в наносекундах или {@code 0}, если метрики выключены
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Записывает время этапа.
+     *
+     * @param stage этап
+     * @param start метка начала, полученная из {@link #start()}
+     */
+    public void stop(Stage stage, long start) {
+        if (enabled) {
+            timers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Учитывает отправленное сообщение.
+     */
+    public void messageSent() {
+        if (enabled) {
+            sent.increment();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.poltanov.forums.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Сервис переноса данных из устаревших таблиц отдельных лобби: сообщений из {@code lobby_{id}_messages}
+ * в общую секционированную таблицу {@code messages} и участников из {@code lobby_{id}_users}
+ * в общую таблицу {@code lobby_members}.
+ * <p>
+ * Запускается один раз после старта приложения. Каждая таблица переносится в отдельной транзакции
+ * и удаляется после успешного копирования, поэтому повторный запуск продолжает с места остановки.
+ * </p>
+ */
+@Service
+public class LegacyTableMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyTableMigrationService.class);
+
+    /**
+     * Шаблон имени устаревшей таблицы лобби.
+     */
+    private static final Pattern LEGACY_TABLE = Pattern.compile("lobby_(\\d+)_(messages|users)");
+
+    private static final String FIND_LEGACY_TABLES_SQL =
+            "SELECT table_name FROM information_schema.tables " +
+            "WHERE table_schema = current_schema() AND table_name LIKE 'lobby\\_%'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    /**
+     * Конструктор для создания экземпляра {@link LegacyTableMigrationService}.
+     *
+     * @param jdbcTemplate        шаблон JDBC для выполнения SQL-запросов
+     * @param transactionTemplate шаблон для выполнения переноса каждой таблицы в отдельной транзакции
+     * @param enabled             включён ли перенос устаревших таблиц при старте
+     */
+    public LegacyTableMigrationService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                       @Value("${chat.storage.migrate-legacy-tables:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Переносит все найденные устаревшие таблицы лобби после запуска приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyTables() {
+        if (!enabled) {
+            return;
+        }
+
+        List<String> tables = jdbcTemplate.queryForList(FIND_LEGACY_TABLES_SQL, String.class);
+        for (String table : tables) {
+            Matcher matcher = LEGACY_TABLE.matcher(table);
+            if (!matcher.matches()) {
+                continue;
+            }
+            Long lobbyId = Long.valueOf(matcher.group(1));
+            boolean messages = "messages".equals(matcher.group(2));
+            try {
+                Integer moved = transactionTemplate.execute(status -> messages
+                        ? migrateMessagesTable(table, lobbyId)
+                        : migrateUsersTable(table, lobbyId));
+                logger.info("Перенесено {} строк из таблицы {}", moved, table);
+            } catch (Exception e) {
+                logger.error("Ошибка при переносе таблицы {}: {}", table, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Копирует сообщения одного лобби в таблицу {@code messages} и удаляет исходную таблицу.
+     * Сообщения получают новые идентификаторы из общей последовательности в исходном порядке,
+     * сообщения удалённых лобби отбрасываются.
+     *
+     * @param table   имя устаревшей таблицы, прошедшее проверку по шаблону
+     * @param lobbyId ID лобби
+     * @return количество перенесённых сообщений
+     */
+    private int migrateMessagesTable(String table, Long lobbyId) {
+        int moved = jdbcTemplate.update(
+                "INSERT INTO messages (lobby_id, text, sender_id, timestamp) " +
+                "SELECT ?, m.text, m.sender_id, m.timestamp FROM " + table + " m " +
+                "WHERE EXISTS (SELECT 1 FROM lobbies l WHERE l.id = ?) ORDER BY m.id",
+                lobbyId, lobbyId);
+        jdbcTemplate.execute("DROP TABLE " + table);
+        return moved;
+    }
+
+    /**
+     * Копирует участников одного лобби в таблицу {@code lobby_members} и удаляет исходную таблицу.
+     * Повторяющиеся записи участников схлопываются первичным ключом.
+     *
+     * @param table   имя устаревшей таблицы, прошедшее проверку по шаблону
+     * @param lobbyId ID лобби
+     * @return количество перенесённых участников
+     */
+    private int migrateUsersTable(String table, Long lobbyId) {
+        int moved = jdbcTemplate.update(
+                "INSERT INTO lobby_members (lobby_id, user_id) " +
+                "SELECT DISTINCT ?, lu.user_id FROM " + table + " lu " +
+                "WHERE EXISTS (SELECT 1 FROM lobbies l WHERE l.id = ?) ON CONFLICT DO NOTHING",
+                lobbyId, lobbyId);
+        jdbcTemplate.execute("DROP TABLE " + table);
+        return moved;
+    }
+}
@@ -0,0 +1,132 @@
+package org.poltanov.forums.service;
+
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновое удаление данных лобби, помеченных удалёнными.
+ * <p>
+ * Раз в {@code chat.lobby-reaper.interval-ms} выбираются лобби с заполненным {@code deleted_at}, и для каждого
+ * удаляются сообщения, курсоры прочтения и участники пакетами по {@code chat.lobby-reaper.batch-size} строк,
+ * а затем сама строка лобби. Каждый пакет — отдельная короткая транзакция, которая блокирует только удаляемые
+ * строки, а между пакетами выдерживается пауза {@code chat.lobby-reaper.batch-pause-ms}, поэтому удаление большого
+ * лобби не мешает работе остальных.
+ * </p>
+ * Удаление идемпотентно: после перезапуска или при нескольких узлах лобби просто дочищается повторно.
+ */
+@Component
+public class LobbyReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(LobbyReaper.class);
+
+    /**
+     * Количество лобби, выбираемых за один проход.
+     */
+    private static final int LOBBIES_PER_PASS = 16;
+
+    private static final String SELECT_DELETED_LOBBIES_SQL =
+            "SELECT id FROM lobbies WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT ?";
+
+    static final String DELETE_MESSAGES_SQL =
+            "DELETE FROM messages WHERE lobby_id = ? AND id IN " +
+            "(SELECT id FROM messages WHERE lobby_id = ? LIMIT ?)";
+
+    static final String DELETE_READ_CURSORS_SQL =
+            "DELETE FROM lobby_read_cursors WHERE lobby_id = ? AND user_id IN " +
+            "(SELECT user_id FROM lobby_read_cursors WHERE lobby_id = ? LIMIT ?)";
+
+    static final String DELETE_MEMBERS_SQL =
+            "DELETE FROM lobby_members WHERE lobby_id = ? AND user_id IN " +
+            "(SELECT user_id FROM lobby_members WHERE lobby_id = ? LIMIT ?)";
+
+    /**
+     * Строка лобби удаляется последней; сообщения, отправленные после начала очистки, удаляются каскадно.
+     */
+    static final String DELETE_LOBBY_SQL =
+            "DELETE FROM lobbies WHERE id = ? AND deleted_at IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final long batchPauseMs;
+    private final ScheduledExecutorService reaper;
+
+    /**
+     * Конструктор для создания экземпляра {@link LobbyReaper}.
+     *
+     * @param jdbcTemplate шаблон JDBC для выполнения SQL-запросов
+     * @param intervalMs   интервал поиска удалённых лобби в миллисекундах
+     * @param batchSize    количество строк, удаляемых одним запросом
+     * @param batchPauseMs пауза между пакетами в миллисекундах
+     */
+    public LobbyReaper(JdbcTemplate jdbcTemplate,
+                       @Value("${chat.lobby-reaper.interval-ms:5000}") long intervalMs,
+                       @Value("${chat.lobby-reaper.batch-size:1000}") int batchSize,
+                       @Value("${chat.lobby-reaper.batch-pause-ms:50}") long batchPauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMs = Math.max(0, batchPauseMs);
+        this.reaper = Executors.newSingleThreadScheduledExecutor(ThreadFactories.named("lobby-reaper-", false));
+        long period = Math.max(1, intervalMs);
+        this.reaper.scheduleWithFixedDelay(this::reap, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает очистку. Незавершённая очистка продолжится после перезапуска.
+     */
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+    }
+
+    /**
+     * Удаляет данные лобби, помеченных удалёнными.
+     */
+    void reap() {
+        try {
+            List<Long> lobbyIds = jdbcTemplate.queryForList(SELECT_DELETED_LOBBIES_SQL, Long.class, LOBBIES_PER_PASS);
+            for (Long lobbyId : lobbyIds) {
+                purge(lobbyId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Ошибка при очистке удалённых лобби: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Удаляет данные одного лобби.
+     *
+     * @param lobbyId ID лобби
+     * @throws InterruptedException если очистка остановлена
+     */
+    void purge(Long lobbyId) throws InterruptedException {
+        long messages = deleteInBatches(DELETE_MESSAGES_SQL, lobbyId);
+        deleteInBatches(DELETE_READ_CURSORS_SQL, lobbyId);
+        long members = deleteInBatches(DELETE_MEMBERS_SQL, lobbyId);
+        jdbcTemplate.update(DELETE_LOBBY_SQL, lobbyId);
+        logger.info("Данные лобби {} удалены: сообщений {}, участников {}", lobbyId, messages, members);
+    }
+
+    private long deleteInBatches(String sql, Long lobbyId) throws InterruptedException {
+        long total = 0;
+        while (true) {
+            int deleted = jdbcTemplate.update(sql, lobbyId, lobbyId, batchSize);
+            total += deleted;
+            if (deleted < batchSize) {
+                return total;
+            }
+            TimeUnit.MILLISECONDS.sleep(batchPauseMs);
+        }
+    }
+}
@@ -6,23 +6,21 @@ import org.poltanov.forums.dto.LobbyUsers;
 import org.poltanov.forums.dto.UserJoinedMessage;
 import org.poltanov.forums.dto.UserLeftMessage;
 import org.poltanov.forums.exception.LobbyNotFoundException;
-import org.poltanov.forums.exception.NotInLobbyException;
 import org.poltanov.forums.exception.UnauthorizedException;
 import org.poltanov.forums.model.Lobby;
 import org.poltanov.forums.model.User;
 import org.poltanov.forums.repository.LobbyRepository;
-import org.poltanov.forums.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 /**
  * Сервис для управления лобби в приложении.
@@ -32,25 +30,62 @@ import java.util.Optional;
 public class LobbyService {
 
     private final LobbyRepository lobbyRepository;
-    private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatEventPublisher eventPublisher;
     private final JdbcTemplate jdbcTemplate;
+    private final RecentMessageBuffer recentMessages;
+    private final PresenceRegistry presenceRegistry;
+    private final UserProfileCache userProfileCache;
     private static final Logger logger = LoggerFactory.getLogger(LobbyService.class);
 
+    private static final String INSERT_CREATOR_SQL =
+            "INSERT INTO lobby_members (lobby_id, user_id) VALUES (?, ?)";
+
+    /**
+     * Идемпотентное присоединение к лобби, не помеченному удалённым. Строка возвращается, только если лобби
+     * существует; {@code joined_id} не пуст, только если строка участника действительно добавлена.
+     */
+    private static final String JOIN_LOBBY_SQL =
+            "WITH lobby AS (SELECT id FROM lobbies WHERE id = ? AND deleted_at IS NULL), joined AS (" +
+            "INSERT INTO lobby_members (lobby_id, user_id) SELECT id, ? FROM lobby ON CONFLICT DO NOTHING RETURNING user_id" +
+            ") SELECT j.user_id AS joined_id, u.nickname FROM lobby " +
+            "LEFT JOIN joined j ON true LEFT JOIN users u ON u.id = j.user_id";
+
+    /**
+     * Выход из лобби: возвращает никнейм, только если строка участника действительно удалена.
+     */
+    private static final String LEAVE_LOBBY_SQL =
+            "WITH removed AS (" +
+            "DELETE FROM lobby_members WHERE lobby_id = ? AND user_id = ? RETURNING user_id" +
+            ") SELECT u.nickname FROM removed r LEFT JOIN users u ON u.id = r.user_id";
+
+    private static final String SELECT_LOBBY_USERS_SQL =
+            "SELECT u.id, u.username, u.password, u.nickname " +
+            "FROM lobby_members lm JOIN users u ON lm.user_id = u.id WHERE lm.lobby_id = ?";
+
+    private static final String SELECT_PARTICIPANTS_SQL =
+            "SELECT u.id, u.nickname " +
+            "FROM lobby_members lm JOIN users u ON lm.user_id = u.id WHERE lm.lobby_id = ?";
+
     /**
      * Конструктор для создания экземпляра {@link LobbyService}.
      *
      * @param lobbyRepository   репозиторий для управления лобби
-     * @param userRepository    репозиторий для управления пользователями
      * @param jdbcTemplate      шаблон JDBC для выполнения SQL-запросов
-     * @param messagingTemplate шаблон для отправки сообщений через WebSocket
+     * @param eventPublisher    сервис рассылки событий чата
+     * @param recentMessages    буфер последних сообщений активных лобби
+     * @param presenceRegistry  реестр присутствия пользователей в лобби
+     * @param userProfileCache  кэш никнеймов пользователей
      */
     @Autowired
-    public LobbyService(LobbyRepository lobbyRepository, UserRepository userRepository, JdbcTemplate jdbcTemplate, SimpMessagingTemplate messagingTemplate) {
+    public LobbyService(LobbyRepository lobbyRepository, JdbcTemplate jdbcTemplate, ChatEventPublisher eventPublisher,
+                        RecentMessageBuffer recentMessages, PresenceRegistry presenceRegistry,
+                        UserProfileCache userProfileCache) {
         this.lobbyRepository = lobbyRepository;
-        this.userRepository = userRepository;
         this.jdbcTemplate = jdbcTemplate;
-        this.messagingTemplate = messagingTemplate;
+        this.eventPublisher = eventPublisher;
+        this.recentMessages = recentMessages;
+        this.presenceRegistry = presenceRegistry;
+        this.userProfileCache = userProfileCache;
     }
 
     /**
@@ -69,30 +104,10 @@ public class LobbyService {
 
         Long lobbyId = lobby.getId();
 
-        String usersTableName = getUsersTableName(lobbyId);
-        String messagesTableName = getMessagesTableName(lobbyId);
-
-        String createUsersTableSql = "CREATE TABLE IF NOT EXISTS " + usersTableName + " (" +
-                "id BIGSERIAL PRIMARY KEY, " +
-                "lobby_id BIGINT NOT NULL REFERENCES lobbies(id) ON DELETE CASCADE, " +
-                "user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE" +
-                ")";
-
-        String createMessagesTableSql = "CREATE TABLE IF NOT EXISTS " + messagesTableName + " (" +
-                "id BIGSERIAL PRIMARY KEY, " +
-                "text TEXT NOT NULL, " +
-                "sender_id BIGINT NOT NULL REFERENCES users(id), " +
-                "timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-
-        jdbcTemplate.execute(createUsersTableSql);
-        jdbcTemplate.execute(createMessagesTableSql);
-
-        String insertCreatorSql = "INSERT INTO " + usersTableName + " (lobby_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(insertCreatorSql, lobbyId, creatorId);
+        jdbcTemplate.update(INSERT_CREATOR_SQL, lobbyId, creatorId);
 
         LobbyCreatedMessage lobbyCreatedMessage = new LobbyCreatedMessage(lobbyId, lobby.getName(), creatorId);
-        messagingTemplate.convertAndSend("/topic/lobbies", lobbyCreatedMessage);
+        eventPublisher.publish("/topic/lobbies", lobbyCreatedMessage);
 
         logger.info("Лобби создано: {}", lobby);
 
@@ -101,117 +116,99 @@ public class LobbyService {
 
     /**
      * Удаление лобби.
+     * Лобби только помечается удалённым и сразу пропадает из списка и становится недоступным для присоединения;
+     * сообщения, участники и сама строка лобби удаляются в фоне {@link LobbyReaper}, поэтому время удаления
+     * не зависит от размера лобби.
      *
      * @param lobbyId     ID лобби для удаления.
      * @param requesterId ID пользователя, запрашивающего удаление.
      * @throws LobbyNotFoundException Если лобби не найдено.
      * @throws UnauthorizedException  Если пользователь не является создателем.
      */
-    @Transactional
     public void deleteLobby(Long lobbyId, Long requesterId) throws LobbyNotFoundException, UnauthorizedException {
-        Lobby lobby = lobbyRepository.findById(lobbyId)
-                .orElseThrow(() -> new LobbyNotFoundException("Лобби не найдено."));
+        Lobby lobby = findActiveLobby(lobbyId);
 
         if (!lobby.getCreatorId().equals(requesterId)) {
             throw new UnauthorizedException("Только создатель может удалить лобби.");
         }
 
-        lobbyRepository.delete(lobby);
-
-        String usersTableName = getUsersTableName(lobbyId);
-        String messagesTableName = getMessagesTableName(lobbyId);
-
-        String dropUsersTableSql = "DROP TABLE IF EXISTS " + usersTableName;
-        String dropMessagesTableSql = "DROP TABLE IF EXISTS " + messagesTableName;
-
-        jdbcTemplate.execute(dropUsersTableSql);
-        jdbcTemplate.execute(dropMessagesTableSql);
+        if (!lobbyRepository.markDeleted(lobbyId)) {
+            // Лобби удалено параллельным запросом, который и разослал уведомление.
+            throw new LobbyNotFoundException("Лобби не найдено.");
+        }
+        recentMessages.invalidate(lobbyId);
 
         LobbyDeletedMessage lobbyDeletedMessage = new LobbyDeletedMessage(lobbyId, lobby.getName());
-        messagingTemplate.convertAndSend("/topic/lobbies", lobbyDeletedMessage);
+        eventPublisher.publish("/topic/lobbies", lobbyDeletedMessage);
 
         logger.info("Лобби удалено: {}", lobby);
     }
 
     /**
      * Присоединение пользователя к лобби.
+     * Выполняется одним запросом: повторное присоединение не меняет состав участников
+     * и не рассылает уведомление.
      *
      * @param lobbyId ID лобби.
      * @param userId  ID пользователя.
      * @throws LobbyNotFoundException Если лобби не найдено.
      */
-    @Transactional
     public void joinLobby(Long lobbyId, Long userId) throws LobbyNotFoundException {
-        Lobby lobby = lobbyRepository.findById(lobbyId)
-                .orElseThrow(() -> new LobbyNotFoundException("Лобби не найдено."));
-
-        String usersTableName = getUsersTableName(lobbyId);
+        List<UserJoinedMessage> joined;
+        try {
+            joined = jdbcTemplate.query(JOIN_LOBBY_SQL, (rs, rowNum) -> {
+                rs.getLong("joined_id");
+                return rs.wasNull() ? null : new UserJoinedMessage(userId, rs.getString("nickname"));
+            }, lobbyId, userId);
+        } catch (DataIntegrityViolationException e) {
+            throw new LobbyNotFoundException("Лобби не найдено.");
+        }
 
-        String checkUserSql = "SELECT COUNT(*) FROM " + usersTableName + " WHERE user_id = ?";
-        Integer count = jdbcTemplate.queryForObject(checkUserSql, Integer.class, userId);
-        if (count != null && count > 0) {
+        if (joined.isEmpty()) {
+            throw new LobbyNotFoundException("Лобби не найдено.");
+        }
+        UserJoinedMessage userJoinedMessage = joined.get(0);
+        if (userJoinedMessage == null) {
             return;
         }
 
-        String insertUserSql = "INSERT INTO " + usersTableName + " (lobby_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(insertUserSql, lobbyId, userId);
-
-        Optional<User> userOpt = userRepository.findById(userId);
-        userOpt.ifPresent(user -> {
-            UserJoinedMessage userJoinedMessage = new UserJoinedMessage(userId, user.getNickname());
-            messagingTemplate.convertAndSend("/topic/lobby/" + lobbyId + "/participants", userJoinedMessage);
-        });
+        eventPublisher.publish(ChatEventPublisher.lobbyParticipantsDestination(lobbyId), userJoinedMessage);
 
         logger.info("Пользователь id={} присоединился к лобби id={}", userId, lobbyId);
     }
 
     /**
      * Покинуть лобби.
+     * Выполняется одним запросом: уведомление рассылается, только если пользователь действительно состоял в лобби.
      *
      * @param lobbyId ID лобби.
      * @param userId  ID пользователя.
-     * @throws LobbyNotFoundException Если лобби не найдено.
-     * @throws NotInLobbyException    Если пользователь не в лобби.
+     * @throws IllegalArgumentException Если ID лобби не указан.
      */
-    @Transactional
-    public void leaveLobby(Long lobbyId, Long userId) throws LobbyNotFoundException, NotInLobbyException {
+    public void leaveLobby(Long lobbyId, Long userId) {
         if (lobbyId == null) {
             throw new IllegalArgumentException("lobbyId не может быть null.");
         }
 
-        Lobby lobby = lobbyRepository.findById(lobbyId)
-                .orElseThrow(() -> new LobbyNotFoundException("Лобби не найдено."));
-
-        String usersTableName = getUsersTableName(lobbyId);
-
-        String checkUserSql = "SELECT COUNT(*) FROM " + usersTableName + " WHERE user_id = ?";
-        Integer count = jdbcTemplate.queryForObject(checkUserSql, Integer.class, userId);
-        if (count == null || count == 0) {
+        List<String> left = jdbcTemplate.query(LEAVE_LOBBY_SQL, (rs, rowNum) -> rs.getString("nickname"), lobbyId, userId);
+        if (left.isEmpty()) {
             logger.warn("Пользователь id={} не состоит в лобби id={}", userId, lobbyId);
             return;
         }
 
-        String deleteUserSql = "DELETE FROM " + usersTableName + " WHERE user_id = ?";
-        jdbcTemplate.update(deleteUserSql, userId);
-
-        Optional<User> userOpt = userRepository.findById(userId);
-        userOpt.ifPresent(user -> {
-            UserLeftMessage userLeftMessage = new UserLeftMessage(userId, user.getNickname());
-            messagingTemplate.convertAndSend("/topic/lobby/" + lobbyId + "/participants", userLeftMessage);
-        });
+        UserLeftMessage userLeftMessage = new UserLeftMessage(userId, left.get(0));
+        eventPublisher.publish(ChatEventPublisher.lobbyParticipantsDestination(lobbyId), userLeftMessage);
 
         logger.info("Пользователь id={} покинул лобби id={}", userId, lobbyId);
     }
 
     /**
-     * Получение списка всех лобби.
+     * Получение списка всех лобби, кроме помеченных удалёнными.
      *
      * @return Список лобби.
      */
     public List<Lobby> getAllLobbies() {
-        List<Lobby> lobbies = new ArrayList<>();
-        lobbyRepository.findAll().forEach(lobbies::add);
-        return lobbies;
+        return lobbyRepository.findAllActive();
     }
 
     /**
@@ -222,71 +219,66 @@ public class LobbyService {
      * @throws LobbyNotFoundException Если лобби не найдено.
      */
     public List<User> getUsersInLobby(Long lobbyId) throws LobbyNotFoundException {
-        Lobby lobby = lobbyRepository.findById(lobbyId)
-                .orElseThrow(() -> new LobbyNotFoundException("Лобби не найдено."));
-
-        String usersTableName = getUsersTableName(lobbyId);
+        findActiveLobby(lobbyId);
 
-        String querySql = "SELECT u.id, u.username, u.password, u.nickname " +
-                "FROM " + usersTableName + " lu " +
-                "JOIN users u ON lu.user_id = u.id";
-
-        List<User> users = jdbcTemplate.query(querySql, (rs, rowNum) -> {
+        List<User> users = jdbcTemplate.query(SELECT_LOBBY_USERS_SQL, (rs, rowNum) -> {
             User user = new User();
             user.setId(rs.getLong("id"));
             user.setUsername(rs.getString("username"));
             user.setPassword(rs.getString("password"));
             user.setNickname(rs.getString("nickname"));
             return user;
-        });
+        }, lobbyId);
 
         return users;
     }
 
     /**
-     * Получение списка участников лобби (DTO).
+     * Получение списка участников лобби (DTO) с признаком присутствия в сети.
      *
      * @param lobbyId ID лобби.
      * @return Список участников.
      * @throws LobbyNotFoundException Если лобби не найдено.
      */
     public List<LobbyUsers> getParticipants(Long lobbyId) throws LobbyNotFoundException {
-        Lobby lobby = lobbyRepository.findById(lobbyId)
-                .orElseThrow(() -> new LobbyNotFoundException("Лобби не найдено."));
+        findActiveLobby(lobbyId);
 
-        String usersTableName = getUsersTableName(lobbyId);
-
-        String querySql = "SELECT u.id, u.nickname " +
-                "FROM " + usersTableName + " lu " +
-                "JOIN users u ON lu.user_id = u.id";
-
-        List<LobbyUsers> participants = jdbcTemplate.query(querySql, (rs, rowNum) -> {
+        List<LobbyUsers> participants = jdbcTemplate.query(SELECT_PARTICIPANTS_SQL, (rs, rowNum) -> {
             LobbyUsers lobbyUser = new LobbyUsers();
             lobbyUser.setUserId(rs.getLong("id"));
-            lobbyUser.setNickname(rs.getString("nickname"));
+            String nickname = rs.getString("nickname");
+            lobbyUser.setNickname(nickname != null ? nickname : UserProfileCache.UNKNOWN_NICKNAME);
+            lobbyUser.setOnline(presenceRegistry.isOnline(lobbyId, lobbyUser.getUserId()));
             return lobbyUser;
-        });
+        }, lobbyId);
 
         return participants;
     }
 
     /**
-     * Генерация имени таблицы пользователей для конкретного лобби.
+     * Получение списка участников лобби, находящихся в сети.
+     * Состав берётся из {@link PresenceRegistry}, никнеймы — из {@link UserProfileCache}, поэтому запрос
+     * к базе данных выполняется только для никнеймов, которых нет в кэше.
      *
      * @param lobbyId ID лобби.
-     * @return Имя таблицы пользователей.
+     * @return Список участников в сети.
      */
-    private String getUsersTableName(Long lobbyId) {
-        return "lobby_" + lobbyId + "_users";
+    public List<LobbyUsers> getOnlineParticipants(Long lobbyId) {
+        Map<Long, String> nicknames = userProfileCache.getNicknames(presenceRegistry.getOnlineUsers(lobbyId));
+        List<LobbyUsers> participants = new ArrayList<>(nicknames.size());
+        nicknames.forEach((userId, nickname) -> participants.add(new LobbyUsers(userId, nickname, true)));
+        return participants;
     }
 
     /**
-     * Генерация имени таблицы сообщений для конкретного лобби.
+     * Поиск лобби, не помеченного удалённым.
      *
      * @param lobbyId ID лобби.
-     * @return Имя таблицы сообщений.
+     * @return Лобби.
+     * @throws LobbyNotFoundException Если лобби не найдено или помечено удалённым.
      */
-    private String getMessagesTableName(Long lobbyId) {
-        return "lobby_" + lobbyId + "_messages";
+    private Lobby findActiveLobby(Long lobbyId) throws LobbyNotFoundException {
+        return lobbyRepository.findActiveById(lobbyId)
+                .orElseThrow(() -> new LobbyNotFoundException("Лобби не найдено."));
     }
 }
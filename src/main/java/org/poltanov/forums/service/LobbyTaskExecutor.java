@@ -0,0 +1,237 @@
+package org.poltanov.forums.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Исполнитель задач, упорядоченный по лобби.
+ * <p>
+ * Задачи одного лобби выполняются строго по одной и в порядке постановки, задачи разных лобби — параллельно
+ * на общем пуле из {@code threads} потоков. У каждого лобби своя очередь не длиннее {@code queue-capacity};
+ * задачи сверх неё отклоняются. Лобби занимает не больше одного потока и после {@code batch-size} задач
+ * уступает его остальным лобби, поэтому одно загруженное лобби не вытесняет другие.
+ * </p>
+ * Метрики: {@code chat.lobby.executor.queued} — задачи в очередях всех лобби, {@code chat.lobby.executor.queue.max} —
+ * длина самой длинной очереди лобби, {@code chat.lobby.executor.lobbies} — лобби с непустой очередью,
+ * {@code chat.lobby.executor.rejected} — отклонённые задачи.
+ * <p>
+ * При {@code spring.threads.virtual.enabled=true} потоки пула виртуальные, поэтому задачи, ожидающие базу данных,
+ * не занимают потоки платформы.
+ * </p>
+ * При остановке исполнитель перестаёт принимать задачи и дорабатывает уже принятые не дольше
+ * {@code shutdown-timeout-ms}; количество невыполненных задач записывается в журнал.
+ */
+@Component
+public class LobbyTaskExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LobbyTaskExecutor.class);
+
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long shutdownTimeoutMs;
+    private final ExecutorService workers;
+    private final Map<Long, LobbyQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final Counter rejected;
+    private volatile boolean stopping;
+
+    /**
+     * Конструктор для создания экземпляра {@link LobbyTaskExecutor}.
+     *
+     * @param threads        количество потоков; {@code 0} — по числу процессоров
+     * @param queueCapacity  максимальное количество задач в очереди одного лобби
+     * @param batchSize      количество задач лобби, после которого поток уступается другим лобби
+     * @param virtualThreads    использовать ли виртуальные потоки
+     * @param shutdownTimeoutMs время на выполнение принятых задач при остановке в миллисекундах
+     * @param meterRegistry     реестр метрик
+     */
+    public LobbyTaskExecutor(@Value("${chat.lobby-executor.threads:0}") int threads,
+                             @Value("${chat.lobby-executor.queue-capacity:1000}") int queueCapacity,
+                             @Value("${chat.lobby-executor.batch-size:64}") int batchSize,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                             @Value("${chat.lobby-executor.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+                             MeterRegistry meterRegistry) {
+        this.queueCapacity = queueCapacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.shutdownTimeoutMs = Math.max(0, shutdownTimeoutMs);
+
+        this.workers = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                ThreadFactories.named("lobby-executor-", virtualThreads));
+
+        Gauge.builder("chat.lobby.executor.queued", queued, AtomicLong::get)
+                .description("Задачи, ожидающие выполнения в очередях лобби")
+                .register(meterRegistry);
+        Gauge.builder("chat.lobby.executor.queue.max", this, LobbyTaskExecutor::getMaxQueueDepth)
+                .description("Длина самой длинной очереди лобби")
+                .register(meterRegistry);
+        Gauge.builder("chat.lobby.executor.lobbies", queues, Map::size)
+                .description("Лобби с задачами в очереди или в работе")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.lobby.executor.rejected")
+                .description("Задачи, отклонённые из-за переполнения очереди лобби")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Останавливает исполнитель: новые задачи отклоняются, принятые выполняются не дольше
+     * {@code shutdown-timeout-ms}, после чего потоки прерываются.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        try {
+            // Очереди лобби сами перепланируют себя в пуле, поэтому пул останавливается только после их опустошения.
+            while (!queues.isEmpty() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        long dropped = queued.get();
+        if (dropped > 0) {
+            logger.warn("Исполнитель лобби остановлен, не выполнено задач: {}", dropped);
+        }
+    }
+
+    /**
+     * Ставит задачу в очередь лобби.
+     *
+     * @param lobbyId ID лобби
+     * @param task    задача
+     * @return {@code true}, если задача принята; {@code false}, если очередь лобби переполнена
+     * или исполнитель остановлен
+     */
+    public boolean execute(Long lobbyId, Runnable task) {
+        if (lobbyId == null) {
+            throw new IllegalArgumentException("Не указан ID лобби");
+        }
+        while (true) {
+            Boolean accepted = queues.computeIfAbsent(lobbyId, LobbyQueue::new).offer(task);
+            if (accepted != null) {
+                return accepted;
+            }
+        }
+    }
+
+    /**
+     * Возвращает длину самой длинной очереди лобби.
+     *
+     * @return количество задач
+     */
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (LobbyQueue queue : queues.values()) {
+            max = Math.max(max, queue.size());
+        }
+        return max;
+    }
+
+    /**
+     * Очередь задач одного лобби. Пока в ней есть задачи, она запланирована в пуле потоков ровно один раз;
+     * опустевшая очередь удаляется из индекса и больше не принимает задач.
+     */
+    private final class LobbyQueue implements Runnable {
+
+        private final Long lobbyId;
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+
+        LobbyQueue(Long lobbyId) {
+            this.lobbyId = lobbyId;
+        }
+
+        /**
+         * @return {@code true} — задача принята, {@code false} — очередь переполнена,
+         * {@code null} — очередь уже удалена и нужно взять новую
+         */
+        synchronized Boolean offer(Runnable task) {
+            if (retired) {
+                return null;
+            }
+            if (tasks.size() >= queueCapacity || stopping) {
+                rejected.increment();
+                return false;
+            }
+            tasks.addLast(task);
+            queued.incrementAndGet();
+            if (!scheduled) {
+                scheduled = true;
+                workers.execute(this);
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return tasks.size();
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < batchSize; i++) {
+                Runnable task = next();
+                if (task == null) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.error("Ошибка при выполнении задачи лобби {}: {}", lobbyId, e.getMessage(), e);
+                }
+            }
+            if (hasMore()) {
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Время на остановку истекло: оставшиеся задачи лобби учитываются в shutdown().
+                    logger.debug("Очередь лобби {} не выполнена: исполнитель остановлен", lobbyId);
+                }
+            }
+        }
+
+        private synchronized Runnable next() {
+            Runnable task = tasks.pollFirst();
+            if (task == null) {
+                retire();
+            } else {
+                queued.decrementAndGet();
+            }
+            return task;
+        }
+
+        private synchronized boolean hasMore() {
+            if (tasks.isEmpty()) {
+                retire();
+                return false;
+            }
+            return true;
+        }
+
+        private void retire() {
+            scheduled = false;
+            retired = true;
+            queues.remove(lobbyId, this);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package org.poltanov.forums.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.exception.LobbyNotFoundException;
+import org.poltanov.forums.model.Message;
+import org.poltanov.forums.util.MessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетная запись сообщений чата с групповой фиксацией.
+ * <p>
+ * Входящие сообщения шифруются в потоке отправителя и ставятся в очередь. Отдельный поток записи
+ * собирает пакет, пока он не достигнет {@code max-size} сообщений или не истечёт {@code max-delay-ms}
+ * с момента прихода первого сообщения, получает блок идентификаторов из последовательности одним запросом
+ * и записывает пакет через {@link JdbcTemplate#batchUpdate} в одной транзакции.
+ * Результат каждого сообщения завершается только после фиксации его пакета. Если пакет отклонён из-за
+ * нарушения ограничения в одной из строк, например сообщения в несуществующее лобби, сообщения пакета
+ * записываются по одному, и ошибкой завершается только результат ошибочного сообщения.
+ * Сообщения в лобби, которое не найдено или помечено удалённым, не записываются: в транзакции пакета
+ * сначала одним запросом выбираются активные лобби пакета, а результаты остальных сообщений завершаются
+ * {@link LobbyNotFoundException}.
+ * </p>
+ * Режим включается свойством {@code chat.messages.write-mode=batched}.
+ */
+@Component
+public class MessageBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchWriter.class);
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval('messages_id_seq') FROM generate_series(1, ?)";
+
+    private static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO messages (id, lobby_id, body, sender_id, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Вставка одного сообщения при записи по одному, только в лобби, не помеченное удалённым.
+     */
+    private static final String INSERT_ACTIVE_MESSAGE_SQL =
+            "INSERT INTO messages (id, lobby_id, body, sender_id, timestamp) SELECT ?, ?, ?, ?, ? " +
+            "WHERE EXISTS (SELECT 1 FROM lobbies WHERE id = ? AND deleted_at IS NULL)";
+
+    private static final String SELECT_ACTIVE_LOBBIES_SQL =
+            "SELECT id FROM lobbies WHERE id = ANY(?) AND deleted_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageCodec messageCodec;
+    private final ChatMetrics metrics;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingMessage> queue;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    /**
+     * Конструктор для создания экземпляра {@link MessageBatchWriter}.
+     *
+     * @param jdbcTemplate        шаблон JDBC для выполнения SQL-запросов
+     * @param transactionTemplate шаблон для записи пакета в одной транзакции
+     * @param messageCodec        кодек для шифрования текста сообщений
+     * @param metrics             метрики пути отправки сообщения
+     * @param writeMode           режим записи сообщений: {@code direct} или {@code batched}
+     * @param maxBatchSize        максимальное количество сообщений в одном пакете
+     * @param maxDelayMs          максимальное время ожидания заполнения пакета в миллисекундах
+     * @param queueCapacity       максимальное количество сообщений, ожидающих записи
+     */
+    public MessageBatchWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, MessageCodec messageCodec,
+                              ChatMetrics metrics,
+                              @Value("${chat.messages.write-mode:direct}") String writeMode,
+                              @Value("${chat.messages.batch.max-size:256}") int maxBatchSize,
+                              @Value("${chat.messages.batch.max-delay-ms:5}") long maxDelayMs,
+                              @Value("${chat.messages.batch.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.messageCodec = messageCodec;
+        this.metrics = metrics;
+        this.enabled = "batched".equalsIgnoreCase(writeMode);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Запускает поток записи, если включён пакетный режим.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop, "message-batch-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Пакетная запись сообщений включена: пакет до {} сообщений, ожидание до {} мс",
+                maxBatchSize, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+    }
+
+    /**
+     * Останавливает поток записи, предварительно записав сообщения, оставшиеся в очереди.
+     *
+     * @throws InterruptedException если ожидание завершения потока было прервано
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Проверяет, включён ли пакетный режим записи.
+     *
+     * @return {@code true}, если сообщения нужно отправлять через {@link #submit}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит сообщение в очередь на запись.
+     *
+     * @param text     Текст сообщения.
+     * @param senderId ID отправителя.
+     * @param lobbyId  ID лобби.
+     * @return Результат, который завершается сохранённым сообщением с открытым текстом после фиксации пакета.
+     */
+    public CompletableFuture<Message> submit(String text, Long senderId, Long lobbyId) {
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        try {
+            long encryptStarted = metrics.start();
+            byte[] body = messageCodec.encode(text);
+            metrics.stop(ChatMetrics.Stage.ENCRYPT, encryptStarted);
+            Message message = new Message();
+            message.setText(text);
+            message.setSenderId(senderId);
+            message.setLobbyId(lobbyId);
+            message.setTimestamp(LocalDateTime.now());
+
+            if (!running || !queue.offer(new PendingMessage(message, body, result))) {
+                result.completeExceptionally(new IllegalStateException("Очередь записи сообщений переполнена."));
+            }
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Основной цикл потока записи: собирает пакеты и записывает их до остановки и опустошения очереди.
+     */
+    private void writeLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Записывает пакет сообщений в одной транзакции и завершает их результаты.
+     *
+     * @param batch пакет сообщений
+     */
+    private void flush(List<PendingMessage> batch) {
+        long started = System.nanoTime();
+        List<Object[]> rows;
+        try {
+            rows = toRows(batch);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении идентификаторов для {} сообщений: {}", batch.size(), e.getMessage(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+
+        List<PendingMessage> written;
+        try {
+            long insertStarted = metrics.start();
+            written = transactionTemplate.execute(status -> insertActive(batch, rows));
+            metrics.stop(ChatMetrics.Stage.INSERT, insertStarted);
+
+            logger.debug("Записан пакет из {} сообщений за {} мкс", batch.size(),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+        } catch (DataIntegrityViolationException e) {
+            // Ошибка в одной строке не должна терять остальные сообщения пакета.
+            logger.warn("Пакет из {} сообщений отклонён, запись по одному: {}", batch.size(), e.getMessage());
+            written = writeOneByOne(batch, rows);
+        } catch (Exception e) {
+            logger.error("Ошибка при записи пакета из {} сообщений: {}", batch.size(), e.getMessage(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+
+        if (written.size() < batch.size()) {
+            Set<PendingMessage> accepted = new HashSet<>(written);
+            for (PendingMessage pending : batch) {
+                if (!accepted.contains(pending)) {
+                    logger.warn("Сообщение пользователя {} не сохранено: лобби {} не найдено",
+                            pending.message().getSenderId(), pending.message().getLobbyId());
+                    pending.result().completeExceptionally(new LobbyNotFoundException("Лобби не найдено."));
+                }
+            }
+        }
+
+        for (PendingMessage pending : written) {
+            metrics.messageSent();
+            try {
+                pending.result().complete(pending.message());
+            } catch (Exception e) {
+                logger.error("Ошибка при обработке записанного сообщения {}: {}",
+                        pending.message().getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Присваивает сообщениям пакета идентификаторы и формирует строки для вставки.
+     *
+     * @param batch пакет сообщений
+     * @return параметры вставки в порядке пакета
+     */
+    private List<Object[]> toRows(List<PendingMessage> batch) {
+        List<Long> ids = jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, batch.size());
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Message message = batch.get(i).message();
+            message.setId(ids.get(i));
+            rows.add(new Object[]{
+                    message.getId(),
+                    message.getLobbyId(),
+                    batch.get(i).body(),
+                    message.getSenderId(),
+                    Timestamp.valueOf(message.getTimestamp())
+            });
+        }
+        return rows;
+    }
+
+    /**
+     * Записывает сообщения пакета, лобби которых не помечены удалёнными. Вызывается в транзакции пакета.
+     *
+     * @param batch пакет сообщений
+     * @param rows  параметры вставки в порядке пакета
+     * @return записанные сообщения в порядке пакета
+     */
+    private List<PendingMessage> insertActive(List<PendingMessage> batch, List<Object[]> rows) {
+        List<Long> lobbyIds = batch.stream().map(pending -> pending.message().getLobbyId())
+                .filter(Objects::nonNull).distinct().toList();
+        Set<Long> active = new HashSet<>(jdbcTemplate.query(SELECT_ACTIVE_LOBBIES_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", lobbyIds.toArray())),
+                (rs, rowNum) -> rs.getLong("id")));
+
+        List<PendingMessage> accepted = new ArrayList<>(batch.size());
+        List<Object[]> acceptedRows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (active.contains(batch.get(i).message().getLobbyId())) {
+                accepted.add(batch.get(i));
+                acceptedRows.add(rows.get(i));
+            }
+        }
+        if (!acceptedRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, acceptedRows);
+        }
+        return accepted;
+    }
+
+    /**
+     * Записывает сообщения отклонённого пакета по одному. Результаты ошибочных сообщений завершаются ошибкой,
+     * сообщений в лобби, которое не найдено или помечено удалённым, — {@link LobbyNotFoundException}.
+     *
+     * @param batch пакет сообщений
+     * @param rows  параметры вставки в порядке пакета
+     * @return записанные сообщения
+     */
+    private List<PendingMessage> writeOneByOne(List<PendingMessage> batch, List<Object[]> rows) {
+        List<PendingMessage> written = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage pending = batch.get(i);
+            try {
+                Object[] row = rows.get(i);
+                if (jdbcTemplate.update(INSERT_ACTIVE_MESSAGE_SQL, row[0], row[1], row[2], row[3], row[4], row[1]) == 0) {
+                    throw new LobbyNotFoundException("Лобби не найдено.");
+                }
+                written.add(pending);
+            } catch (Exception e) {
+                logger.warn("Сообщение пользователя {} в лобби {} не сохранено: {}",
+                        pending.message().getSenderId(), pending.message().getLobbyId(), e.getMessage());
+                pending.result().completeExceptionally(e);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Сообщение, ожидающее записи, и его результат.
+     *
+     * @param message сообщение с открытым текстом
+     * @param body    зашифрованный текст сообщения
+     * @param result  результат, завершаемый после фиксации пакета
+     */
+    private record PendingMessage(Message message, byte[] body, CompletableFuture<Message> result) {
+    }
+}
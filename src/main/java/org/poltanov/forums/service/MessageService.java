@@ -1,22 +1,35 @@
 package org.poltanov.forums.service;
 
 import org.poltanov.forums.dto.ChatMessage;
+import org.poltanov.forums.dto.MessagePage;
+import org.poltanov.forums.exception.LobbyNotFoundException;
 import org.poltanov.forums.model.Message;
-import org.poltanov.forums.model.User;
-import org.poltanov.forums.repository.UserRepository;
-import org.poltanov.forums.util.EncryptionUtil;
+import org.poltanov.forums.util.AesGcmMessageCodec;
+import org.poltanov.forums.util.LegacyAesMessageCodec;
+import org.poltanov.forums.util.MessageCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Сервис для управления сообщениями в приложении.
@@ -26,58 +39,167 @@ import java.util.stream.Collectors;
 public class MessageService {
 
     private final JdbcTemplate jdbcTemplate;
-    private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserProfileCache userProfileCache;
+    private final ChatEventPublisher eventPublisher;
+    private final MessageCodec messageCodec;
+    private final LegacyAesMessageCodec legacyCodec;
+    private final RecentMessageBuffer recentMessages;
+    private final ChatMetrics metrics;
+    private final int exportFetchSize;
     private static final Logger logger = LoggerFactory.getLogger(MessageService.class);
 
+    /**
+     * Текст, который показывается вместо сообщения, которое не удалось расшифровать.
+     */
+    private static final String UNREADABLE_TEXT = "Ошибка при дешифровке сообщения.";
+
+    /**
+     * Вставка сообщения в общую секционированную таблицу {@code messages}.
+     * Текст запроса не зависит от лобби, поэтому план кэшируется драйвером и сервером.
+     * Строка вставляется только в лобби, не помеченное удалённым: внешний ключ проверяет лишь существование
+     * лобби, а помеченное лобби существует до прохода {@link LobbyReaper}.
+     */
+    private static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO messages (lobby_id, body, sender_id, timestamp) SELECT ?, ?, ?, ? " +
+            "WHERE EXISTS (SELECT 1 FROM lobbies WHERE id = ? AND deleted_at IS NULL) " +
+            "RETURNING id";
+
+    /**
+     * Проверка, что лобби существует и не помечено удалённым.
+     */
+    private static final String ACTIVE_LOBBY_SQL =
+            "SELECT 1 FROM lobbies WHERE id = ? AND deleted_at IS NULL";
+
+    /**
+     * Размер страницы истории по умолчанию.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Максимально допустимый размер страницы истории.
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Самая новая страница сообщений лобби (по убыванию идентификатора).
+     */
+    private static final String SELECT_LATEST_PAGE_SQL =
+            "SELECT id, lobby_id, body, text, sender_id, timestamp FROM messages " +
+            "WHERE lobby_id = ? ORDER BY id DESC LIMIT ?";
+
+    /**
+     * Страница сообщений старше курсора (по убыванию идентификатора).
+     */
+    private static final String SELECT_PAGE_BEFORE_SQL =
+            "SELECT id, lobby_id, body, text, sender_id, timestamp FROM messages " +
+            "WHERE lobby_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+
+    /**
+     * Одно сообщение лобби по ID.
+     */
+    private static final String SELECT_MESSAGE_SQL =
+            "SELECT id, lobby_id, body, text, sender_id, timestamp FROM messages WHERE lobby_id = ? AND id = ?";
+
+    /**
+     * Страница сообщений новее курсора (по возрастанию идентификатора).
+     */
+    private static final String SELECT_PAGE_AFTER_SQL =
+            "SELECT id, lobby_id, body, text, sender_id, timestamp FROM messages " +
+            "WHERE lobby_id = ? AND id > ? ORDER BY id ASC LIMIT ?";
+
+    /**
+     * Все сообщения лобби по возрастанию идентификатора для выгрузки.
+     */
+    private static final String SELECT_ALL_SQL =
+            "SELECT id, lobby_id, body, text, sender_id, timestamp FROM messages " +
+            "WHERE lobby_id = ? ORDER BY id ASC";
+
+    /**
+     * Преобразование строки таблицы {@code messages} в {@link StoredMessage} с ещё не расшифрованным текстом.
+     * Доступно в пакете для бенчмарков.
+     */
+    static final RowMapper<StoredMessage> STORED_MESSAGE_ROW_MAPPER = (rs, rowNum) -> {
+        Message message = new Message();
+        message.setId(rs.getLong("id"));
+        message.setLobbyId(rs.getLong("lobby_id"));
+        message.setSenderId(rs.getLong("sender_id"));
+        message.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        return new StoredMessage(message, rs.getBytes("body"), rs.getString("text"));
+    };
+
     /**
      * Конструктор для создания экземпляра {@link MessageService}.
      *
      * @param jdbcTemplate      шаблон JDBC для выполнения SQL-запросов
-     * @param userRepository    репозиторий для управления пользователями
-     * @param messagingTemplate шаблон для отправки сообщений через WebSocket
+     * @param userProfileCache  кэш никнеймов пользователей
+     * @param eventPublisher    сервис рассылки событий чата
+     * @param messageCodec      кодек для шифрования новых сообщений
+     * @param legacyCodec       кодек для чтения сообщений устаревшего формата
+     * @param recentMessages    буфер последних сообщений активных лобби
+     * @param metrics           метрики пути отправки сообщения
+     * @param exportFetchSize   количество строк, читаемых из курсора базы данных за раз при выгрузке истории
      */
     @Autowired
-    public MessageService(JdbcTemplate jdbcTemplate, UserRepository userRepository, SimpMessagingTemplate messagingTemplate) {
+    public MessageService(JdbcTemplate jdbcTemplate, UserProfileCache userProfileCache, ChatEventPublisher eventPublisher,
+                          MessageCodec messageCodec, LegacyAesMessageCodec legacyCodec, RecentMessageBuffer recentMessages,
+                          ChatMetrics metrics,
+                          @Value("${chat.messages.export.fetch-size:500}") int exportFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
-        this.userRepository = userRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.userProfileCache = userProfileCache;
+        this.eventPublisher = eventPublisher;
+        this.messageCodec = messageCodec;
+        this.legacyCodec = legacyCodec;
+        this.recentMessages = recentMessages;
+        this.metrics = metrics;
+        this.exportFetchSize = Math.max(1, exportFetchSize);
     }
 
     /**
      * Отправка сообщения.
+     * После фиксации транзакции сообщение добавляется в {@link RecentMessageBuffer}, чтобы самая новая страница
+     * истории, отданная из буфера, не пропускала сообщения, отправленные через REST, и учитывается в счётчиках
+     * непрочитанных сообщений (см. {@link ChatEventPublisher#recordMessage}).
      *
      * @param text     Текст сообщения.
      * @param senderId ID отправителя.
      * @param lobbyId  ID лобби.
-     * @return Сохранённое сообщение.
-     * @throws Exception Если возникает ошибка при сохранении сообщения.
+     * @return Сохранённое сообщение с открытым текстом.
+     * @throws LobbyNotFoundException Если лобби не найдено или помечено удалённым.
+     * @throws Exception              Если возникает ошибка при сохранении сообщения.
      */
     @Transactional
     public Message sendMessage(String text, Long senderId, Long lobbyId) throws Exception {
         try {
-            String encryptedText = EncryptionUtil.encrypt(text);
-
-            String messagesTableName = getMessagesTableName(lobbyId);
-
-            String insertSql = "INSERT INTO " + messagesTableName + " (text, sender_id, timestamp) VALUES (?, ?, ?) RETURNING id, text, sender_id, timestamp";
-            Message savedMessage = jdbcTemplate.queryForObject(
-                    insertSql,
-                    new Object[]{encryptedText, senderId, LocalDateTime.now()},
-                    (rs, rowNum) -> {
-                        Message msg = new Message();
-                        msg.setId(rs.getLong("id"));
-                        msg.setText(rs.getString("text"));
-                        msg.setSenderId(rs.getLong("sender_id"));
-                        msg.setLobbyId(lobbyId);
-                        msg.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
-                        return msg;
-                    }
+            long encryptStarted = metrics.start();
+            byte[] body = messageCodec.encode(text);
+            metrics.stop(ChatMetrics.Stage.ENCRYPT, encryptStarted);
+
+            Message savedMessage = new Message();
+            savedMessage.setText(text);
+            savedMessage.setSenderId(senderId);
+            savedMessage.setLobbyId(lobbyId);
+            savedMessage.setTimestamp(LocalDateTime.now());
+            long insertStarted = metrics.start();
+            List<Long> ids = jdbcTemplate.queryForList(
+                    INSERT_MESSAGE_SQL,
+                    Long.class,
+                    lobbyId, body, senderId, savedMessage.getTimestamp(), lobbyId
             );
+            metrics.stop(ChatMetrics.Stage.INSERT, insertStarted);
+            if (ids.isEmpty()) {
+                throw new LobbyNotFoundException("Лобби не найдено.");
+            }
+            savedMessage.setId(ids.get(0));
+            metrics.messageSent();
+            afterCommit(() -> eventPublisher.recordMessage(
+                    toChatMessage(savedMessage, userProfileCache.getNickname(senderId))));
 
             logger.info("Сообщение сохранено: {}", savedMessage.getId());
 
             return savedMessage;
+        } catch (LobbyNotFoundException e) {
+            logger.warn("Сообщение пользователя {} не сохранено: лобби {} не найдено", senderId, lobbyId);
+            throw e;
         } catch (Exception e) {
             logger.error("Ошибка при сохранении сообщения: {}", e.getMessage(), e);
             throw e;
@@ -85,81 +207,334 @@ public class MessageService {
     }
 
     /**
-     * Получение сообщений лобби.
+     * Получение страницы истории сообщений лобби по курсору.
+     * <p>
+     * Без курсоров возвращается самая новая страница. С курсором {@code before} — сообщения старше указанного,
+     * с курсором {@code after} — новее указанного. Каждая страница читается поиском по индексу
+     * {@code (lobby_id, id)} с ограничением {@code limit + 1}, лишняя строка служит признаком продолжения.
+     * Самая новая страница отдаётся из {@link RecentMessageBuffer}, если буфер лобби её содержит; иначе она
+     * читается из базы данных вместе с сообщениями для заполнения буфера.
+     * </p>
      *
      * @param lobbyId ID лобби.
-     * @return Список сообщений.
-     * @throws Exception Если возникает ошибка при получении сообщений.
+     * @param before  ID сообщения, старше которого нужно вернуть страницу, или {@code null}.
+     * @param after   ID сообщения, новее которого нужно вернуть страницу, или {@code null}.
+     * @param limit   Размер страницы.
+     * @return Страница сообщений в порядке отправки.
+     * @throws IllegalArgumentException Если одновременно указаны {@code before} и {@code after}.
+     * @throws LobbyNotFoundException   Если лобби не найдено или помечено удалённым.
      */
-    public List<Message> getMessagesByLobby(Long lobbyId) throws Exception {
+    public MessagePage getMessagesPage(Long lobbyId, Long before, Long after, int limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Нельзя одновременно указывать before и after.");
+        }
+        requireActiveLobby(lobbyId);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean latest = before == null && after == null;
+
+        if (latest) {
+            RecentMessageBuffer.Snapshot cached = recentMessages.latest(lobbyId, pageSize);
+            if (cached != null) {
+                return toPage(withCurrentNicknames(cached.messages()), cached.hasMore());
+            }
+        }
+
         try {
-            String messagesTableName = getMessagesTableName(lobbyId);
-
-            String querySql = "SELECT id, text, sender_id, timestamp FROM " + messagesTableName + " ORDER BY timestamp ASC";
-
-            List<Message> encryptedMessages = jdbcTemplate.query(querySql, (rs, rowNum) -> {
-                Message message = new Message();
-                message.setId(rs.getLong("id"));
-                message.setText(rs.getString("text"));
-                message.setSenderId(rs.getLong("sender_id"));
-                message.setLobbyId(lobbyId);
-                message.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
-                return message;
-            });
-
-            return encryptedMessages.stream().map(message -> {
-                try {
-                    String decryptedText = EncryptionUtil.decrypt(message.getText());
-                    message.setText(decryptedText);
-                    return message;
-                } catch (Exception e) {
-                    logger.error("Ошибка при дешифровке сообщения: {}", e.getMessage(), e);
-                    return message;
+            // При чтении самой новой страницы заодно читается столько сообщений, сколько вмещает буфер лобби.
+            int fetchSize = latest ? Math.max(pageSize, recentMessages.getCapacity()) : pageSize;
+            List<StoredMessage> rows;
+            if (after != null) {
+                rows = jdbcTemplate.query(SELECT_PAGE_AFTER_SQL, STORED_MESSAGE_ROW_MAPPER, lobbyId, after, fetchSize + 1);
+            } else if (before != null) {
+                rows = jdbcTemplate.query(SELECT_PAGE_BEFORE_SQL, STORED_MESSAGE_ROW_MAPPER, lobbyId, before, fetchSize + 1);
+            } else {
+                rows = jdbcTemplate.query(SELECT_LATEST_PAGE_SQL, STORED_MESSAGE_ROW_MAPPER, lobbyId, fetchSize + 1);
+            }
+
+            boolean hasMore = rows.size() > fetchSize;
+            if (hasMore) {
+                rows = rows.subList(0, fetchSize);
+            }
+            List<Message> ordered = decodeAll(rows);
+            if (after == null) {
+                Collections.reverse(ordered);
+            }
+
+            Set<Long> senderIds = new HashSet<>();
+            for (Message message : ordered) {
+                senderIds.add(message.getSenderId());
+            }
+            Map<Long, String> nicknames = userProfileCache.getNicknames(senderIds);
+
+            List<ChatMessage> chatMessages = new ArrayList<>(ordered.size());
+            for (Message message : ordered) {
+                chatMessages.add(toChatMessage(message, nicknames.get(message.getSenderId())));
+            }
+
+            if (latest) {
+                recentMessages.seed(lobbyId, chatMessages, !hasMore);
+                if (chatMessages.size() > pageSize) {
+                    chatMessages = new ArrayList<>(chatMessages.subList(chatMessages.size() - pageSize, chatMessages.size()));
+                    hasMore = true;
                 }
-            }).collect(Collectors.toList());
+            }
+
+            if (after != null) {
+                Long nextCursor = chatMessages.isEmpty() ? null : chatMessages.get(chatMessages.size() - 1).getId();
+                return new MessagePage(chatMessages, nextCursor, hasMore);
+            }
+            return toPage(chatMessages, hasMore);
         } catch (Exception e) {
             logger.error("Ошибка при получении сообщений для лобби {}: {}", lobbyId, e.getMessage(), e);
             throw e;
         }
     }
 
+    /**
+     * Выгрузка всей истории лобби в порядке отправки.
+     * <p>
+     * Сообщения читаются курсором базы данных по {@code chat.messages.export.fetch-size} строк, расшифровываются
+     * по одному и сразу передаются получателю, поэтому расход памяти не зависит от размера лобби. Курсор
+     * PostgreSQL работает только внутри транзакции, поэтому метод выполняется в транзакции только для чтения.
+     * Ответ с выгрузкой начинается до чтения сообщений, поэтому наличие лобби проверяется заранее
+     * через {@link #requireActiveLobby(Long)}.
+     * </p>
+     *
+     * @param lobbyId ID лобби.
+     * @param sink    Получатель сообщений, например поток ответа.
+     * @return Количество выгруженных сообщений.
+     * @throws IOException Если получатель не смог принять сообщение, например клиент закрыл соединение.
+     */
+    @Transactional(readOnly = true)
+    public long exportMessages(Long lobbyId, MessageSink sink) throws IOException {
+        long count = 0;
+        try (Stream<StoredMessage> rows = jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ALL_SQL);
+            statement.setFetchSize(exportFetchSize);
+            statement.setLong(1, lobbyId);
+            return statement;
+        }, STORED_MESSAGE_ROW_MAPPER)) {
+            Iterator<StoredMessage> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Message message = decode(iterator.next());
+                sink.accept(toChatMessage(message, userProfileCache.getNickname(message.getSenderId())));
+                count++;
+            }
+        } catch (IOException e) {
+            logger.warn("Выгрузка сообщений лобби {} прервана после {} сообщений: {}", lobbyId, count, e.getMessage());
+            throw e;
+        }
+        logger.info("Выгружено сообщений лобби {}: {}", lobbyId, count);
+        return count;
+    }
+
+    /**
+     * Проверка, что лобби существует и не помечено удалённым.
+     *
+     * @param lobbyId ID лобби.
+     * @throws LobbyNotFoundException Если лобби не найдено или помечено удалённым.
+     */
+    public void requireActiveLobby(Long lobbyId) throws LobbyNotFoundException {
+        if (jdbcTemplate.queryForList(ACTIVE_LOBBY_SQL, Integer.class, lobbyId).isEmpty()) {
+            throw new LobbyNotFoundException("Лобби не найдено.");
+        }
+    }
+
     /**
      * Бродкастинг сообщения через WebSocket.
      *
-     * @param message Сообщение для распространения.
+     * @param message Сообщение с открытым текстом для распространения.
      */
     public void broadcastMessage(Message message) {
-        String decryptedText;
-        try {
-            decryptedText = EncryptionUtil.decrypt(message.getText());
-        } catch (Exception e) {
-            decryptedText = "Ошибка при дешифровке сообщения.";
+        long nicknameStarted = metrics.start();
+        String nickname = userProfileCache.getNickname(message.getSenderId());
+        metrics.stop(ChatMetrics.Stage.NICKNAME, nicknameStarted);
+        eventPublisher.publishMessage(toChatMessage(message, nickname));
+    }
+
+    /**
+     * Получение одного сообщения лобби для клиента.
+     *
+     * @param lobbyId ID лобби.
+     * @param id      ID сообщения.
+     * @return Сообщение с открытым текстом или {@code null}, если сообщение не найдено.
+     */
+    public ChatMessage findChatMessage(Long lobbyId, Long id) {
+        List<StoredMessage> rows = jdbcTemplate.query(SELECT_MESSAGE_SQL, STORED_MESSAGE_ROW_MAPPER, lobbyId, id);
+        if (rows.isEmpty()) {
+            return null;
         }
+        Message message = decodeAll(rows).get(0);
+        return toChatMessage(message, userProfileCache.getNickname(message.getSenderId()));
+    }
+
+    /**
+     * Формирование страницы истории, упорядоченной по возрастанию ID, с курсором на самое старое сообщение.
+     *
+     * @param chatMessages Сообщения страницы.
+     * @param hasMore      Есть ли сообщения старше страницы.
+     * @return Страница сообщений.
+     */
+    private MessagePage toPage(List<ChatMessage> chatMessages, boolean hasMore) {
+        Long nextCursor = chatMessages.isEmpty() ? null : chatMessages.get(0).getId();
+        return new MessagePage(chatMessages, nextCursor, hasMore);
+    }
 
-        String senderNickname = "Unknown";
-        Optional<User> userOpt = userRepository.findById(message.getSenderId());
-        if (userOpt.isPresent()) {
-            senderNickname = userOpt.get().getNickname();
+    /**
+     * Копирование сообщений из буфера с актуальными никнеймами отправителей.
+     * Сообщения в буфере не изменяются, так как они разделяются между запросами.
+     *
+     * @param cached Сообщения из буфера.
+     * @return Копии сообщений.
+     */
+    private List<ChatMessage> withCurrentNicknames(List<ChatMessage> cached) {
+        Set<Long> senderIds = new HashSet<>();
+        for (ChatMessage message : cached) {
+            senderIds.add(message.getSenderId());
         }
+        Map<Long, String> nicknames = userProfileCache.getNicknames(senderIds);
 
-        ChatMessage chatMessage = new ChatMessage();
-        chatMessage.setId(message.getId());
-        chatMessage.setText(decryptedText);
-        chatMessage.setSenderId(message.getSenderId());
-        chatMessage.setSenderNickname(senderNickname);
-        chatMessage.setLobbyId(message.getLobbyId());
-        chatMessage.setTimestamp(message.getTimestamp());
+        List<ChatMessage> copies = new ArrayList<>(cached.size());
+        for (ChatMessage message : cached) {
+            copies.add(new ChatMessage(message.getId(), message.getText(), message.getSenderId(),
+                    nicknames.get(message.getSenderId()), message.getLobbyId(), message.getTimestamp()));
+        }
+        return copies;
+    }
 
-        messagingTemplate.convertAndSend("/topic/lobby/" + message.getLobbyId() + "/messages", chatMessage);
+    /**
+     * Выполняет действие после фиксации текущей транзакции или сразу, если транзакции нет.
+     *
+     * @param action действие
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     /**
-     * Получение названия таблицы сообщений для лобби.
+     * Преобразование расшифрованного сообщения в DTO для клиента.
      *
-     * @param lobbyId ID лобби.
-     * @return Название таблицы сообщений.
+     * @param message        Сообщение с расшифрованным текстом.
+     * @param senderNickname Никнейм отправителя.
+     * @return DTO сообщения чата.
+     */
+    private ChatMessage toChatMessage(Message message, String senderNickname) {
+        return new ChatMessage(
+                message.getId(),
+                message.getText(),
+                message.getSenderId(),
+                senderNickname,
+                message.getLobbyId(),
+                message.getTimestamp()
+        );
+    }
+
+    /**
+     * Расшифровка набора сохранённых сообщений. Сообщения нового формата расшифровываются одним пакетом,
+     * сообщения устаревшего формата — кодеком {@link LegacyAesMessageCodec}.
+     *
+     * @param rows Сохранённые сообщения.
+     * @return Сообщения с открытым текстом в том же порядке.
      */
-    private String getMessagesTableName(Long lobbyId) {
-        return "lobby_" + lobbyId + "_messages";
+    private List<Message> decodeAll(List<StoredMessage> rows) {
+        List<byte[]> payloads = new ArrayList<>(rows.size());
+        for (StoredMessage row : rows) {
+            if (row.body() != null) {
+                payloads.add(row.body());
+            }
+        }
+        long decryptStarted = metrics.start();
+        Iterator<String> decoded = messageCodec.decodeAll(payloads).iterator();
+        metrics.stop(ChatMetrics.Stage.DECRYPT, decryptStarted);
+
+        List<Message> messages = new ArrayList<>(rows.size());
+        for (StoredMessage row : rows) {
+            Message message = row.message();
+            String text = row.body() != null ? decoded.next() : decodeLegacy(row.legacyText());
+            if (text == null) {
+                logger.error("Ошибка при дешифровке сообщения {}", message.getId());
+                text = UNREADABLE_TEXT;
+            }
+            message.setText(text);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Расшифровка одного сохранённого сообщения.
+     *
+     * @param row Сохранённое сообщение.
+     * @return Сообщение с открытым текстом.
+     */
+    private Message decode(StoredMessage row) {
+        Message message = row.message();
+        String text;
+        if (row.body() != null) {
+            try {
+                text = messageCodec.decode(row.body());
+            } catch (GeneralSecurityException | RuntimeException e) {
+                text = null;
+            }
+        } else {
+            text = decodeLegacy(row.legacyText());
+        }
+        if (text == null) {
+            logger.error("Ошибка при дешифровке сообщения {}", message.getId());
+            text = UNREADABLE_TEXT;
+        }
+        message.setText(text);
+        return message;
+    }
+
+    /**
+     * Расшифровка текста сообщения устаревшего формата.
+     *
+     * @param legacyText Значение столбца {@code text}.
+     * @return Открытый текст или {@code null}, если расшифровать не удалось.
+     */
+    private String decodeLegacy(String legacyText) {
+        if (legacyText == null) {
+            return null;
+        }
+        try {
+            return legacyCodec.decodeText(legacyText);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Сохранённое сообщение до расшифровки.
+     *
+     * @param message    Сообщение без текста.
+     * @param body       Зашифрованный текст в формате {@link AesGcmMessageCodec} или {@code null}.
+     * @param legacyText Зашифрованный текст устаревшего формата или {@code null}.
+     */
+    record StoredMessage(Message message, byte[] body, String legacyText) {
+    }
+
+    /**
+     * Получатель сообщений при выгрузке истории.
+     */
+    @FunctionalInterface
+    public interface MessageSink {
+
+        /**
+         * Принимает очередное сообщение.
+         *
+         * @param message Сообщение с открытым текстом.
+         * @throws IOException Если сообщение не удалось записать.
+         */
+        void accept(ChatMessage message) throws IOException;
     }
 }
@@ -0,0 +1,397 @@
+package org.poltanov.forums.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.dto.ChatMessage;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Канал событий чата между узлами через PostgreSQL {@code LISTEN/NOTIFY}.
+ * <p>
+ * Включается свойством {@code chat.broker.mode=postgres}. Каждое событие сериализуется в компактный JSON
+ * и ставится в очередь; отдельный поток собирает события в пакеты, упаковывает их в уведомления размером
+ * не больше {@code max-payload-bytes} и отправляет все уведомления пакета одним запросом {@code pg_notify}.
+ * Сообщение чата, которое не помещается в уведомление, публикуется только своими идентификаторами
+ * и загружается получателем из базы данных.
+ * </p>
+ * Каждый узел держит отдельное соединение, подписанное на канал {@code chat.backplane.channel}, и доставляет
+ * события других узлов локальным подписчикам через {@link SimpMessagingTemplate}.
+ */
+@Component
+public class PostgresNotifyBackplane {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresNotifyBackplane.class);
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, payload) FROM unnest(?) AS payload";
+
+    /**
+     * Предел размера полезной нагрузки {@code NOTIFY} в PostgreSQL по умолчанию — 8000 байт.
+     */
+    static final int NOTIFY_LIMIT_BYTES = 8000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RecentMessageBuffer recentMessages;
+    private final ReadCursorService readCursors;
+    private final ObjectProvider<MessageService> messageService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final String channel;
+    private final String nodeId;
+    private final int maxPayloadBytes;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<String> queue;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread publisherThread;
+    private Thread listenerThread;
+
+    /**
+     * Конструктор для создания экземпляра {@link PostgresNotifyBackplane}.
+     *
+     * @param jdbcTemplate         шаблон JDBC для отправки уведомлений
+     * @param dataSourceProperties параметры подключения для отдельного соединения слушателя
+     * @param messagingTemplate    шаблон для доставки событий локальным подписчикам
+     * @param recentMessages       буфер последних сообщений активных лобби
+     * @param readCursors          курсоры прочтения и счётчики непрочитанных сообщений
+     * @param messageService       сервис для загрузки сообщений, опубликованных только идентификаторами
+     * @param objectMapper         преобразователь событий в JSON
+     * @param brokerMode           режим брокера; канал включён при значении {@code postgres}
+     * @param channel              имя канала {@code LISTEN/NOTIFY}, общего для узлов кластера
+     * @param nodeId               идентификатор узла; по умолчанию случайный
+     * @param maxPayloadBytes      максимальный размер одного уведомления в байтах
+     * @param maxBatchSize         максимальное количество событий в одном пакете
+     * @param maxDelayMs           максимальное время ожидания заполнения пакета в миллисекундах
+     * @param queueCapacity        максимальное количество событий, ожидающих отправки
+     */
+    public PostgresNotifyBackplane(JdbcTemplate jdbcTemplate, DataSourceProperties dataSourceProperties,
+                                   SimpMessagingTemplate messagingTemplate, RecentMessageBuffer recentMessages,
+                                   ReadCursorService readCursors, ObjectProvider<MessageService> messageService,
+                                   ObjectMapper objectMapper,
+                                   @Value("${chat.broker.mode:simple}") String brokerMode,
+                                   @Value("${chat.backplane.channel:chat_events}") String channel,
+                                   @Value("${chat.backplane.node-id:}") String nodeId,
+                                   @Value("${chat.backplane.max-payload-bytes:7900}") int maxPayloadBytes,
+                                   @Value("${chat.backplane.batch.max-size:256}") int maxBatchSize,
+                                   @Value("${chat.backplane.batch.max-delay-ms:2}") long maxDelayMs,
+                                   @Value("${chat.backplane.batch.queue-capacity:10000}") int queueCapacity) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Недопустимое имя канала: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.messagingTemplate = messagingTemplate;
+        this.recentMessages = recentMessages;
+        this.readCursors = readCursors;
+        this.messageService = messageService;
+        this.objectMapper = objectMapper;
+        this.enabled = "postgres".equalsIgnoreCase(brokerMode);
+        this.channel = channel;
+        this.nodeId = nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+        this.maxPayloadBytes = Math.min(maxPayloadBytes, NOTIFY_LIMIT_BYTES - 1);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Запускает потоки отправки и приёма уведомлений, если канал включён.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "chat-notify-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+        listenerThread = new Thread(this::listenLoop, "chat-notify-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        logger.info("Канал событий через PostgreSQL включён: канал {}, узел {}", channel, nodeId);
+    }
+
+    /**
+     * Останавливает потоки, предварительно отправив события, оставшиеся в очереди.
+     *
+     * @throws InterruptedException если ожидание завершения потоков было прервано
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (publisherThread == null) {
+            return;
+        }
+        running = false;
+        publisherThread.join(TimeUnit.SECONDS.toMillis(10));
+        listenerThread.join(TimeUnit.SECONDS.toMillis(2));
+    }
+
+    /**
+     * Публикует сообщение чата для остальных узлов.
+     *
+     * @param destination адрес подписки
+     * @param message     сообщение с открытым текстом
+     * @param json        сообщение, уже преобразованное в JSON для локальных подписчиков
+     */
+    public void publishMessage(String destination, ChatMessage message, byte[] json) {
+        if (!enabled) {
+            return;
+        }
+        String event = event(destination, "\"k\":\"m\",", json);
+        if (event.getBytes(StandardCharsets.UTF_8).length > maxEventBytes()) {
+            ObjectNode reference = objectMapper.createObjectNode();
+            reference.put("d", destination);
+            reference.put("l", message.getLobbyId());
+            reference.put("m", message.getId());
+            event = reference.toString();
+        }
+        enqueue(event);
+    }
+
+    /**
+     * Публикует событие для остальных узлов.
+     *
+     * @param destination адрес подписки
+     * @param json        событие, уже преобразованное в JSON для локальных подписчиков
+     */
+    public void publish(String destination, byte[] json) {
+        if (!enabled) {
+            return;
+        }
+        String event = event(destination, "", json);
+        if (event.getBytes(StandardCharsets.UTF_8).length > maxEventBytes()) {
+            logger.error("Событие для {} не помещается в уведомление и не будет доставлено на другие узлы", destination);
+            return;
+        }
+        enqueue(event);
+    }
+
+    /**
+     * Собирает событие из готового JSON без повторной сериализации.
+     */
+    private static String event(String destination, String kind, byte[] json) {
+        return "{\"d\":" + TextNode.valueOf(destination) + "," + kind + "\"b\":"
+                + new String(json, StandardCharsets.UTF_8) + "}";
+    }
+
+    private void enqueue(String event) {
+        if (!queue.offer(event)) {
+            logger.error("Очередь событий для других узлов переполнена, событие отброшено");
+        }
+    }
+
+    /**
+     * Максимальный размер одного события с учётом заголовка уведомления.
+     */
+    private int maxEventBytes() {
+        return maxPayloadBytes - envelopeHeader(Long.MAX_VALUE).length() - 2;
+    }
+
+    private String envelopeHeader(long seq) {
+        return "{\"o\":\"" + nodeId + "\",\"s\":" + seq + ",\"e\":[";
+    }
+
+    /**
+     * Основной цикл потока отправки: собирает пакеты событий и отправляет их до остановки и опустошения очереди.
+     */
+    private void publishLoop() {
+        List<String> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    String next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                sendNotifications(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Упаковывает пакет событий в уведомления и отправляет их одним запросом.
+     *
+     * @param batch события в порядке публикации
+     */
+    private void sendNotifications(List<String> batch) {
+        List<String> payloads = pack(batch);
+        try {
+            jdbcTemplate.query(NOTIFY_SQL, ps -> {
+                Array array = ps.getConnection().createArrayOf("text", payloads.toArray());
+                ps.setString(1, channel);
+                ps.setArray(2, array);
+            }, rs -> null);
+        } catch (Exception e) {
+            logger.error("Ошибка при отправке {} событий другим узлам: {}", batch.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Упаковывает события в уведомления, не превышающие {@code max-payload-bytes}.
+     * Порядковый номер в заголовке не даёт PostgreSQL схлопнуть одинаковые уведомления.
+     *
+     * @param events события, каждое из которых помещается в уведомление
+     * @return полезные нагрузки уведомлений в порядке событий
+     */
+    List<String> pack(List<String> events) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = null;
+        int payloadBytes = 0;
+        for (String event : events) {
+            int eventBytes = event.getBytes(StandardCharsets.UTF_8).length;
+            if (payload != null && payloadBytes + 1 + eventBytes + 2 > maxPayloadBytes) {
+                payloads.add(payload.append("]}").toString());
+                payload = null;
+            }
+            if (payload == null) {
+                payload = new StringBuilder(envelopeHeader(sequence.incrementAndGet()));
+                payloadBytes = payload.length();
+            } else {
+                payload.append(',');
+                payloadBytes++;
+            }
+            payload.append(event);
+            payloadBytes += eventBytes;
+        }
+        if (payload != null) {
+            payloads.add(payload.append("]}").toString());
+        }
+        return payloads;
+    }
+
+    /**
+     * Основной цикл потока приёма: держит отдельное соединение с подпиской на канал и переподключается при сбое.
+     */
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                // Уведомления, пришедшие до подписки, потеряны, поэтому буферы последних сообщений заполняются заново.
+                recentMessages.invalidateAll();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Соединение слушателя событий потеряно: {}", e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Доставляет события из уведомления другого узла локальным подписчикам.
+     *
+     * @param payload полезная нагрузка уведомления
+     */
+    private void dispatch(String payload) {
+        try {
+            JsonNode envelope = objectMapper.readTree(payload);
+            if (nodeId.equals(envelope.path("o").asText())) {
+                return;
+            }
+            for (JsonNode event : envelope.path("e")) {
+                String destination = event.path("d").asText();
+                if (event.has("m")) {
+                    ChatMessage message = messageService.getObject()
+                            .findChatMessage(event.path("l").asLong(), event.path("m").asLong());
+                    if (message != null) {
+                        deliverMessage(destination, message);
+                    }
+                } else if ("m".equals(event.path("k").asText())) {
+                    ChatMessage message = objectMapper.treeToValue(event.path("b"), ChatMessage.class);
+                    recentMessages.append(message);
+                    readCursors.onMessage(message);
+                    messagingTemplate.send(destination,
+                            ChatEventPublisher.jsonMessage(objectMapper.writeValueAsBytes(event.path("b"))));
+                } else {
+                    messagingTemplate.send(destination,
+                            ChatEventPublisher.jsonMessage(objectMapper.writeValueAsBytes(event.path("b"))));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            logger.error("Некорректное уведомление от другого узла: {}", e.getMessage());
+        } catch (Exception e) {
+            logger.error("Ошибка при доставке событий другого узла: {}", e.getMessage(), e);
+        }
+    }
+
+    private void deliverMessage(String destination, ChatMessage message) throws JsonProcessingException {
+        recentMessages.append(message);
+        readCursors.onMessage(message);
+        messagingTemplate.send(destination, ChatEventPublisher.jsonMessage(objectMapper.writeValueAsBytes(message)));
+    }
+}
@@ -0,0 +1,253 @@
+package org.poltanov.forums.service;
+
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.dto.PresenceChangedMessage;
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реестр присутствия пользователей в лобби.
+ * <p>
+ * Пользователь считается в сети в лобби, пока хотя бы одна его сессия WebSocket подписана на
+ * {@code /topic/lobby/{id}/messages}. Реестр обновляется по событиям сессий STOMP и хранится в памяти узла,
+ * поэтому проверка присутствия не обращается к базе данных.
+ * </p>
+ * Изменения накапливаются в течение {@code chat.presence.debounce-ms} и рассылаются одним
+ * {@link PresenceChangedMessage} на лобби по адресу участников. Пользователь, который переподключился внутри окна,
+ * в рассылку не попадает. При нескольких узлах каждый узел знает только о своих сессиях.
+ */
+@Component
+public class PresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private static final String LOBBY_PREFIX = "/topic/lobby/";
+    private static final String MESSAGES_SUFFIX = "/messages";
+
+    private final ChatEventPublisher eventPublisher;
+    private final ScheduledExecutorService flusher;
+
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Пользователи в сети по лобби: ID пользователя → количество подписок его сессий.
+     */
+    private final Map<Long, Map<Long, Integer>> online = new ConcurrentHashMap<>();
+
+    /**
+     * Пользователи, о присутствии которых уже разосланы уведомления. Используется только потоком рассылки.
+     */
+    private final Map<Long, Set<Long>> announced = new ConcurrentHashMap<>();
+
+    private final Set<Long> changedLobbies = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Конструктор для создания экземпляра {@link PresenceRegistry}.
+     *
+     * @param eventPublisher сервис рассылки событий чата
+     * @param debounceMs     окно накопления изменений присутствия в миллисекундах
+     */
+    public PresenceRegistry(ChatEventPublisher eventPublisher,
+                            @Value("${chat.presence.debounce-ms:500}") long debounceMs) {
+        this.eventPublisher = eventPublisher;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(ThreadFactories.named("presence-", false));
+        long period = Math.max(1, debounceMs);
+        this.flusher.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает поток рассылки.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Проверяет, находится ли пользователь в сети в лобби.
+     *
+     * @param lobbyId ID лобби
+     * @param userId  ID пользователя
+     * @return {@code true}, если у пользователя есть сессия, подписанная на сообщения лобби
+     */
+    public boolean isOnline(Long lobbyId, Long userId) {
+        Map<Long, Integer> users = online.get(lobbyId);
+        return users != null && users.containsKey(userId);
+    }
+
+    /**
+     * Возвращает пользователей, находящихся в сети в лобби.
+     *
+     * @param lobbyId ID лобби
+     * @return ID пользователей
+     */
+    public Set<Long> getOnlineUsers(Long lobbyId) {
+        Map<Long, Integer> users = online.get(lobbyId);
+        return users != null ? Set.copyOf(users.keySet()) : Set.of();
+    }
+
+    /**
+     * Регистрирует подключившуюся сессию.
+     *
+     * @param event событие подключения клиента STOMP
+     */
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Object connect = event.getMessage().getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        if (connect instanceof Message<?> connectMessage) {
+            session(connectMessage.getHeaders());
+        }
+    }
+
+    /**
+     * Отмечает пользователя в сети при подписке на сообщения лобби.
+     *
+     * @param event событие подписки клиента STOMP
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        MessageHeaders headers = event.getMessage().getHeaders();
+        Long lobbyId = lobbyIdOf(SimpMessageHeaderAccessor.getDestination(headers));
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        SessionPresence session = session(headers);
+        if (lobbyId == null || subscriptionId == null || session == null) {
+            return;
+        }
+        session.subscriptions().put(subscriptionId, lobbyId);
+        join(lobbyId, session.userId());
+    }
+
+    /**
+     * Отмечает выход из лобби при отписке от его сообщений.
+     *
+     * @param event событие отписки клиента STOMP
+     */
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        MessageHeaders headers = event.getMessage().getHeaders();
+        SessionPresence session = sessions.get(SimpMessageHeaderAccessor.getSessionId(headers));
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        if (session == null || subscriptionId == null) {
+            return;
+        }
+        Long lobbyId = session.subscriptions().remove(subscriptionId);
+        if (lobbyId != null) {
+            leave(lobbyId, session.userId());
+        }
+    }
+
+    /**
+     * Отмечает выход из всех лобби сессии при её отключении.
+     *
+     * @param event событие отключения клиента STOMP
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionPresence session = sessions.remove(event.getSessionId());
+        if (session != null) {
+            session.subscriptions().values().forEach(lobbyId -> leave(lobbyId, session.userId()));
+        }
+    }
+
+    /**
+     * Рассылает накопившиеся изменения присутствия: по одному уведомлению на лобби.
+     */
+    void flush() {
+        Iterator<Long> iterator = changedLobbies.iterator();
+        while (iterator.hasNext()) {
+            Long lobbyId = iterator.next();
+            iterator.remove();
+            try {
+                Set<Long> current = getOnlineUsers(lobbyId);
+                Set<Long> previous = announced.getOrDefault(lobbyId, Set.of());
+                List<Long> cameOnline = difference(current, previous);
+                List<Long> wentOffline = difference(previous, current);
+                if (current.isEmpty()) {
+                    announced.remove(lobbyId);
+                } else {
+                    announced.put(lobbyId, current);
+                }
+                if (!cameOnline.isEmpty() || !wentOffline.isEmpty()) {
+                    eventPublisher.publish(ChatEventPublisher.lobbyParticipantsDestination(lobbyId),
+                            new PresenceChangedMessage(cameOnline, wentOffline));
+                }
+            } catch (Exception e) {
+                logger.error("Ошибка при рассылке присутствия в лобби {}: {}", lobbyId, e.getMessage());
+            }
+        }
+    }
+
+    private SessionPresence session(MessageHeaders headers) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        if (sessionId == null || attributes == null || !(attributes.get("userId") instanceof Long userId)) {
+            return null;
+        }
+        return sessions.computeIfAbsent(sessionId, id -> new SessionPresence(userId, new ConcurrentHashMap<>()));
+    }
+
+    private void join(Long lobbyId, Long userId) {
+        online.compute(lobbyId, (id, users) -> {
+            Map<Long, Integer> result = users != null ? users : new ConcurrentHashMap<>();
+            result.merge(userId, 1, Integer::sum);
+            return result;
+        });
+        changedLobbies.add(lobbyId);
+    }
+
+    private void leave(Long lobbyId, Long userId) {
+        online.computeIfPresent(lobbyId, (id, users) -> {
+            users.computeIfPresent(userId, (user, count) -> count > 1 ? count - 1 : null);
+            return users.isEmpty() ? null : users;
+        });
+        changedLobbies.add(lobbyId);
+    }
+
+    private static Long lobbyIdOf(String destination) {
+        if (destination == null || !destination.startsWith(LOBBY_PREFIX) || !destination.endsWith(MESSAGES_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(destination.substring(LOBBY_PREFIX.length(), destination.length() - MESSAGES_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<Long> difference(Set<Long> from, Set<Long> subtract) {
+        Set<Long> result = new HashSet<>(from);
+        result.removeAll(subtract);
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Сессия пользователя и её подписки на сообщения лобби.
+     *
+     * @param userId        ID пользователя
+     * @param subscriptions подписки: ID подписки → ID лобби
+     */
+    private record SessionPresence(Long userId, Map<String, Long> subscriptions) {
+    }
+}
@@ -0,0 +1,160 @@
+package org.poltanov.forums.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение частоты запросов пользователей.
+ * <p>
+ * Для каждой пары (ограничение, пользователь) хранится корзина токенов в виде алгоритма GCRA: одно значение —
+ * теоретическое время прихода следующего запроса. Запрос принимается, если это время опережает текущее не больше
+ * чем на размер всплеска, и сдвигает его на интервал между запросами. Проверка — один {@code compareAndSet}
+ * без блокировок.
+ * </p>
+ * Корзины, к которым не обращались {@code chat.rate-limit.idle-ms}, вытесняются: к этому моменту корзина
+ * гарантированно полна, поэтому вытеснение не меняет решений. Отклонённые запросы учитываются в метрике
+ * {@code chat.rate-limit.throttled} с тегом {@code limit}.
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * Ограничиваемые операции.
+     */
+    public enum Limit {
+
+        /**
+         * Отправка сообщения через STOMP {@code /app/chat.sendMessage}.
+         */
+        CHAT_SEND("chat-send"),
+
+        /**
+         * Отправка сообщения через REST {@code /messages/send}.
+         */
+        MESSAGES_SEND("messages-send"),
+
+        /**
+         * Создание лобби через REST {@code /lobby/create}.
+         */
+        LOBBY_CREATE("lobby-create");
+
+        private final String tag;
+
+        Limit(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<Limit, Rate> rates = new EnumMap<>(Limit.class);
+    private final Map<Limit, Counter> throttled = new EnumMap<>(Limit.class);
+    private final Cache<BucketKey, AtomicLong> buckets;
+
+    /**
+     * Конструктор для создания экземпляра {@link RateLimiter}.
+     *
+     * @param enabled             включено ли ограничение
+     * @param chatSendRate        допустимое количество сообщений STOMP в секунду
+     * @param chatSendBurst       допустимый всплеск сообщений STOMP
+     * @param messagesSendRate    допустимое количество сообщений REST в секунду
+     * @param messagesSendBurst   допустимый всплеск сообщений REST
+     * @param lobbyCreateRate     допустимое количество созданий лобби в секунду
+     * @param lobbyCreateBurst    допустимый всплеск созданий лобби
+     * @param idleMs              время без обращений, после которого корзина вытесняется, в миллисекундах
+     * @param maxBuckets          максимальное количество корзин в памяти
+     * @param meterRegistry       реестр метрик
+     */
+    public RateLimiter(@Value("${chat.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${chat.rate-limit.chat-send.per-second:10}") double chatSendRate,
+                       @Value("${chat.rate-limit.chat-send.burst:20}") int chatSendBurst,
+                       @Value("${chat.rate-limit.messages-send.per-second:5}") double messagesSendRate,
+                       @Value("${chat.rate-limit.messages-send.burst:10}") int messagesSendBurst,
+                       @Value("${chat.rate-limit.lobby-create.per-second:0.1}") double lobbyCreateRate,
+                       @Value("${chat.rate-limit.lobby-create.burst:5}") int lobbyCreateBurst,
+                       @Value("${chat.rate-limit.idle-ms:600000}") long idleMs,
+                       @Value("${chat.rate-limit.max-buckets:100000}") long maxBuckets,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        rates.put(Limit.CHAT_SEND, new Rate(chatSendRate, chatSendBurst));
+        rates.put(Limit.MESSAGES_SEND, new Rate(messagesSendRate, messagesSendBurst));
+        rates.put(Limit.LOBBY_CREATE, new Rate(lobbyCreateRate, lobbyCreateBurst));
+
+        long maxFillNanos = rates.values().stream().mapToLong(Rate::burstNanos).max().orElse(0);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofNanos(Math.max(maxFillNanos, Duration.ofMillis(idleMs).toNanos())))
+                .build();
+
+        for (Limit limit : Limit.values()) {
+            throttled.put(limit, Counter.builder("chat.rate-limit.throttled")
+                    .description("Запросы, отклонённые из-за превышения частоты")
+                    .tag("limit", limit.tag)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("chat.rate-limit.buckets", buckets, Cache::estimatedSize)
+                .description("Корзины токенов пользователей в памяти")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пытается принять запрос пользователя.
+     *
+     * @param limit ограничиваемая операция
+     * @param user  ключ пользователя: ID или, если он неизвестен, имя пользователя
+     * @return {@code 0}, если запрос принят; иначе время в миллисекундах, через которое запрос будет принят
+     */
+    public long tryAcquire(Limit limit, Object user) {
+        Rate rate = rates.get(limit);
+        if (!enabled || user == null || rate.intervalNanos() <= 0) {
+            return 0;
+        }
+        AtomicLong arrival = buckets.get(new BucketKey(limit, user), key -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.nanoTime();
+        while (true) {
+            long current = arrival.get();
+            long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = start + rate.intervalNanos();
+            long ahead = next - now;
+            if (ahead > rate.burstNanos()) {
+                throttled.get(limit).increment();
+                return Math.max(1, (ahead - rate.burstNanos()) / 1_000_000);
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Частота и всплеск ограничения.
+     *
+     * @param intervalNanos интервал между запросами в наносекундах; {@code 0} — без ограничения
+     * @param burstNanos    допустимое опережение расписания в наносекундах
+     */
+    private record Rate(long intervalNanos, long burstNanos) {
+
+        Rate(double perSecond, int burst) {
+            this(perSecond > 0 ? Math.round(1_000_000_000L / perSecond) : 0,
+                    perSecond > 0 ? Math.round(1_000_000_000L / perSecond) * Math.max(1, burst) : 0);
+        }
+    }
+
+    /**
+     * Корзина пользователя для ограничения.
+     *
+     * @param limit ограничиваемая операция
+     * @param user  ключ пользователя
+     */
+    private record BucketKey(Limit limit, Object user) {
+    }
+}
@@ -0,0 +1,364 @@
+package org.poltanov.forums.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.dto.ChatMessage;
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Курсоры прочтения и счётчики непрочитанных сообщений.
+ * <p>
+ * Курсор — ID последнего прочитанного пользователем сообщения лобби. Новые значения курсоров копятся в памяти
+ * и раз в {@code chat.read-cursors.flush-ms} записываются в {@code lobby_read_cursors} одним пакетом.
+ * </p>
+ * Непрочитанные считаются без обращения к сообщениям: для лобби в памяти хранится общее количество сообщений,
+ * которое увеличивается при каждом новом сообщении, а для пользователя — количество сообщений, прочитанных
+ * на момент сдвига курсора. Сообщения могут приходить не по порядку ID (с других узлов, из пакетной записи)
+ * и повторно, поэтому счётчик лобби помнит ID последних учтённых сообщений и учитывает каждое ровно один раз;
+ * если пришло сообщение старше запомненных, счётчик сбрасывается и загружается заново. Счётчики также
+ * перезагружаются раз в {@code chat.read-cursors.counter-ttl-ms}, что ограничивает расхождение из-за сообщений,
+ * которые до этого узла не дошли. Разность этих чисел и есть количество непрочитанных. Значения загружаются из базы
+ * данных при первом обращении и вытесняются из памяти по размеру кэша.
+ * <p>
+ * {@link #onMessage} и {@link #markRead} вызываются на пути рассылки сообщения и работают только с памятью.
+ * Если позиции пользователя нет в памяти или количество прочитанных по ней не вычислить из счётчика лобби,
+ * курсор запоминается без количества, а позиция дозагружается из базы данных при следующем
+ * {@link #getUnreadCounts}.
+ * </p>
+ */
+@Service
+public class ReadCursorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadCursorService.class);
+
+    private static final String UPSERT_CURSOR_SQL =
+            "INSERT INTO lobby_read_cursors (user_id, lobby_id, last_read_message_id) VALUES (?, ?, ?) " +
+            "ON CONFLICT (user_id, lobby_id) DO UPDATE SET last_read_message_id = " +
+            "GREATEST(lobby_read_cursors.last_read_message_id, EXCLUDED.last_read_message_id)";
+
+    private static final String SELECT_MEMBER_LOBBIES_SQL =
+            "SELECT lm.lobby_id FROM lobby_members lm JOIN lobbies l ON l.id = lm.lobby_id " +
+            "WHERE lm.user_id = ? AND l.deleted_at IS NULL";
+
+    private static final String SELECT_LOBBY_COUNTERS_SQL =
+            "SELECT lobby_id, count(*) AS total, max(id) AS last_id FROM messages " +
+            "WHERE lobby_id = ANY(?) GROUP BY lobby_id";
+
+    private static final String SELECT_READ_POSITIONS_SQL =
+            "SELECT c.lobby_id, c.last_read_message_id, " +
+            "(SELECT count(*) FROM messages m WHERE m.lobby_id = c.lobby_id AND m.id <= c.last_read_message_id) AS read_count " +
+            "FROM lobby_read_cursors c WHERE c.user_id = ? AND c.lobby_id = ANY(?)";
+
+    private static final String COUNT_READ_SQL =
+            "SELECT count(*) FROM messages WHERE lobby_id = ? AND id <= ?";
+
+    /**
+     * Количество прочитанных сообщений, которое ещё не вычислено.
+     */
+    private static final long UNKNOWN_COUNT = -1;
+
+    /**
+     * Количество последних ID сообщений, которые счётчик лобби помнит для учёта без повторов.
+     */
+    private static final int TRACKED_MESSAGE_IDS = 4096;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, LobbyCounter> lobbyCounters;
+    private final Cache<CursorKey, ReadPosition> positions;
+    private final Map<CursorKey, Long> pendingCursors = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Конструктор для создания экземпляра {@link ReadCursorService}.
+     *
+     * @param jdbcTemplate шаблон JDBC для выполнения SQL-запросов
+     * @param flushMs      интервал записи курсоров в базу данных в миллисекундах
+     * @param cacheSize    максимальное количество лобби и курсоров, хранимых в памяти
+     * @param counterTtlMs время, через которое счётчик лобби загружается из базы данных заново, в миллисекундах
+     */
+    public ReadCursorService(JdbcTemplate jdbcTemplate,
+                             @Value("${chat.read-cursors.flush-ms:1000}") long flushMs,
+                             @Value("${chat.read-cursors.cache-size:100000}") long cacheSize,
+                             @Value("${chat.read-cursors.counter-ttl-ms:60000}") long counterTtlMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lobbyCounters = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Math.max(1, counterTtlMs), TimeUnit.MILLISECONDS)
+                .build();
+        this.positions = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(ThreadFactories.named("read-cursors-", false));
+        long period = Math.max(1, flushMs);
+        this.flusher.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает запись по таймеру и записывает оставшиеся курсоры.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Учитывает новое сообщение лобби: увеличивает счётчик сообщений лобби и сдвигает курсор отправителя.
+     * Не обращается к базе данных.
+     *
+     * @param message новое сообщение
+     */
+    public void onMessage(ChatMessage message) {
+        if (message.getId() == null || message.getLobbyId() == null) {
+            return;
+        }
+        LobbyCounter counter = lobbyCounters.getIfPresent(message.getLobbyId());
+        if (counter != null && !counter.record(message.getId())) {
+            lobbyCounters.asMap().remove(message.getLobbyId(), counter);
+        }
+        if (message.getSenderId() != null) {
+            markRead(message.getSenderId(), message.getLobbyId(), message.getId());
+        }
+    }
+
+    /**
+     * Сдвигает курсор прочтения пользователя. Курсор только увеличивается. Не обращается к базе данных.
+     *
+     * @param userId    ID пользователя
+     * @param lobbyId   ID лобби
+     * @param messageId ID последнего прочитанного сообщения
+     */
+    public void markRead(Long userId, Long lobbyId, Long messageId) {
+        CursorKey key = new CursorKey(userId, lobbyId);
+        LobbyCounter counter = lobbyCounters.getIfPresent(lobbyId);
+        long readCount = counter != null ? counter.countUpTo(messageId) : UNKNOWN_COUNT;
+        positions.asMap().merge(key, new ReadPosition(messageId, readCount, false), (previous, next) -> {
+            if (previous.lastReadId() >= next.lastReadId()) {
+                return previous;
+            }
+            // Курсор, сверенный с базой данных, остаётся сверенным: в базе он может быть только меньше.
+            return new ReadPosition(next.lastReadId(), next.readCount(), previous.loaded());
+        });
+        pendingCursors.merge(key, messageId, Math::max);
+    }
+
+    /**
+     * Возвращает количество непрочитанных сообщений во всех лобби пользователя.
+     *
+     * @param userId ID пользователя
+     * @return количество непрочитанных сообщений по ID лобби
+     */
+    public Map<Long, Long> getUnreadCounts(Long userId) {
+        List<Long> lobbyIds = jdbcTemplate.queryForList(SELECT_MEMBER_LOBBIES_SQL, Long.class, userId);
+        if (lobbyIds.isEmpty()) {
+            return Map.of();
+        }
+        loadLobbyCounters(lobbyIds);
+
+        List<CursorKey> stale = new ArrayList<>();
+        for (Long lobbyId : lobbyIds) {
+            CursorKey key = new CursorKey(userId, lobbyId);
+            ReadPosition position = positions.getIfPresent(key);
+            if (position == null || !position.loaded() || position.readCount() == UNKNOWN_COUNT) {
+                stale.add(key);
+            }
+        }
+        if (!stale.isEmpty()) {
+            // Курсоры, сдвинутые только в памяти, сначала записываются, чтобы загрузка сверила их с базой данных.
+            flush(stale);
+            positions.invalidateAll(stale);
+            loadReadPositions(userId, stale.stream().map(CursorKey::lobbyId).toList());
+        }
+
+        Map<Long, Long> unread = new LinkedHashMap<>();
+        for (Long lobbyId : lobbyIds) {
+            LobbyCounter counter = lobbyCounters.getIfPresent(lobbyId);
+            long total = counter != null ? counter.snapshot()[0] : 0;
+            ReadPosition position = positions.getIfPresent(new CursorKey(userId, lobbyId));
+            long read = 0;
+            if (position != null) {
+                read = position.readCount() != UNKNOWN_COUNT
+                        ? position.readCount()
+                        : jdbcTemplate.queryForObject(COUNT_READ_SQL, Long.class, lobbyId, position.lastReadId());
+            }
+            unread.put(lobbyId, Math.max(0, total - read));
+        }
+        return unread;
+    }
+
+    /**
+     * Записывает накопившиеся курсоры одним пакетом.
+     */
+    void flush() {
+        if (!pendingCursors.isEmpty()) {
+            flush(List.copyOf(pendingCursors.keySet()));
+        }
+    }
+
+    private void flush(Collection<CursorKey> keys) {
+        List<Object[]> batch = new ArrayList<>();
+        for (CursorKey key : keys) {
+            Long messageId = pendingCursors.remove(key);
+            if (messageId != null) {
+                batch.add(new Object[]{key.userId(), key.lobbyId(), messageId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_CURSOR_SQL, batch);
+        } catch (DataAccessException e) {
+            // Например, лобби удалено: записываем курсоры по одному и пропускаем ошибочные.
+            logger.debug("Ошибка при пакетной записи курсоров: {}", e.getMessage());
+            for (Object[] row : batch) {
+                try {
+                    jdbcTemplate.update(UPSERT_CURSOR_SQL, row);
+                } catch (DataAccessException rowError) {
+                    logger.warn("Курсор пользователя {} в лобби {} не сохранён: {}", row[0], row[1], rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void loadLobbyCounters(List<Long> lobbyIds) {
+        List<Long> missing = lobbyIds.stream().filter(id -> lobbyCounters.getIfPresent(id) == null).toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, LobbyCounter> loaded = new HashMap<>();
+        jdbcTemplate.query(SELECT_LOBBY_COUNTERS_SQL, ps -> ps.setArray(1, bigintArray(ps.getConnection(), missing)),
+                rs -> {
+                    loaded.put(rs.getLong("lobby_id"), new LobbyCounter(rs.getLong("total"), rs.getLong("last_id")));
+                });
+        for (Long lobbyId : missing) {
+            // Счётчик, созданный параллельно по новому сообщению, не перезаписывается.
+            lobbyCounters.asMap().putIfAbsent(lobbyId, loaded.getOrDefault(lobbyId, new LobbyCounter(0, 0)));
+        }
+    }
+
+    private void loadReadPositions(Long userId, List<Long> lobbyIds) {
+        List<Long> missing = lobbyIds.stream()
+                .filter(id -> positions.getIfPresent(new CursorKey(userId, id)) == null)
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, ReadPosition> loaded = new HashMap<>();
+        jdbcTemplate.query(SELECT_READ_POSITIONS_SQL, ps -> {
+            ps.setLong(1, userId);
+            ps.setArray(2, bigintArray(ps.getConnection(), missing));
+        }, rs -> {
+            loaded.put(rs.getLong("lobby_id"),
+                    new ReadPosition(rs.getLong("last_read_message_id"), rs.getLong("read_count"), true));
+        });
+        for (Long lobbyId : missing) {
+            positions.asMap().putIfAbsent(new CursorKey(userId, lobbyId),
+                    loaded.getOrDefault(lobbyId, new ReadPosition(0, 0, true)));
+        }
+    }
+
+    private static Array bigintArray(Connection connection, List<Long> ids) throws SQLException {
+        return connection.createArrayOf("bigint", ids.toArray());
+    }
+
+    /**
+     * Пользователь в лобби.
+     *
+     * @param userId  ID пользователя
+     * @param lobbyId ID лобби
+     */
+    private record CursorKey(Long userId, Long lobbyId) {
+    }
+
+    /**
+     * Позиция прочтения пользователя в лобби.
+     *
+     * @param lastReadId ID последнего прочитанного сообщения
+     * @param readCount  количество сообщений лобби с ID не больше {@code lastReadId} или {@link #UNKNOWN_COUNT}
+     * @param loaded     сверен ли курсор с базой данных
+     */
+    private record ReadPosition(long lastReadId, long readCount, boolean loaded) {
+    }
+
+    /**
+     * Количество сообщений лобби и ID последнего учтённого сообщения.
+     * <p>
+     * Сообщения с ID не больше загруженного из базы данных уже вошли в счётчик. Более новые учитываются по множеству
+     * учтённых ID, поэтому повторная доставка и доставка не по порядку не искажают счётчик. Множество хранит
+     * не больше {@link #TRACKED_MESSAGE_IDS} ID; самые старые вытесняются, и сообщение старше вытесненных
+     * уже нельзя проверить на повтор.
+     * </p>
+     */
+    private static final class LobbyCounter {
+
+        private final long loadedLastId;
+        private final TreeSet<Long> counted = new TreeSet<>();
+        private long floor;
+        private long total;
+        private long lastMessageId;
+
+        LobbyCounter(long total, long lastMessageId) {
+            this.total = total;
+            this.lastMessageId = lastMessageId;
+            this.loadedLastId = lastMessageId;
+            this.floor = lastMessageId;
+        }
+
+        /**
+         * Учитывает сообщение, если оно ещё не учтено.
+         *
+         * @return {@code false}, если нельзя определить, учтено ли сообщение, и счётчик нужно загрузить заново
+         */
+        synchronized boolean record(long messageId) {
+            if (messageId <= floor) {
+                return messageId <= loadedLastId;
+            }
+            if (!counted.add(messageId)) {
+                return true;
+            }
+            total++;
+            lastMessageId = Math.max(lastMessageId, messageId);
+            if (counted.size() > TRACKED_MESSAGE_IDS) {
+                floor = counted.pollFirst();
+            }
+            return true;
+        }
+
+        /**
+         * Возвращает количество сообщений лобби с ID не больше указанного, если его можно вычислить без базы данных.
+         *
+         * @return количество сообщений или {@link #UNKNOWN_COUNT}
+         */
+        synchronized long countUpTo(long messageId) {
+            return messageId >= lastMessageId ? total : UNKNOWN_COUNT;
+        }
+
+        /**
+         * @return количество сообщений и ID последнего учтённого сообщения
+         */
+        synchronized long[] snapshot() {
+            return new long[]{total, lastMessageId};
+        }
+    }
+}
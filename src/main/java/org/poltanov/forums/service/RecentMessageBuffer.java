@@ -0,0 +1,257 @@
+package org.poltanov.forums.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.poltanov.forums.dto.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Буфер последних расшифрованных сообщений активных лобби в памяти процесса.
+ * <p>
+ * Для каждого лобби хранится кольцевой буфер фиксированного размера, упорядоченный по ID сообщения.
+ * Буфер пополняется при рассылке новых сообщений и заполняется из базы данных при первом чтении
+ * самой новой страницы истории. После заполнения он содержит непрерывный диапазон последних сообщений,
+ * поэтому самая новая страница отдаётся без запросов к базе данных и без расшифровки.
+ * </p>
+ * Буферы неактивных лобби вытесняются по истечении {@code idle-ms}, суммарный оценочный объём всех буферов
+ * ограничен {@code max-bytes}. При {@code chat.broker.mode=relay} буфер отключён: сообщения, отправленные
+ * на других узлах, в него не попадают.
+ */
+@Component
+public class RecentMessageBuffer {
+
+    /**
+     * Оценка накладных расходов на одно сообщение в байтах без учёта строк.
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final Cache<Long, LobbyRing> rings;
+
+    /**
+     * Конструктор для создания экземпляра {@link RecentMessageBuffer}.
+     *
+     * @param capacity максимальное количество сообщений в буфере одного лобби
+     * @param maxBytes суммарный оценочный объём всех буферов в байтах
+     * @param idleMs   время без обращений, после которого буфер лобби вытесняется, в миллисекундах
+     * @param enabled  включён ли буфер
+     */
+    public RecentMessageBuffer(@Value("${chat.cache.recent-messages.per-lobby:100}") int capacity,
+                               @Value("${chat.cache.recent-messages.max-bytes:67108864}") long maxBytes,
+                               @Value("${chat.cache.recent-messages.idle-ms:600000}") long idleMs,
+                               @Value("#{!'${chat.broker.mode:simple}'.equalsIgnoreCase('relay')}") boolean enabled) {
+        this.enabled = enabled;
+        this.capacity = enabled ? capacity : 0;
+        this.rings = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long lobbyId, LobbyRing ring) -> ring.weight())
+                .expireAfterAccess(Duration.ofMillis(idleMs))
+                .build();
+    }
+
+    /**
+     * Возвращает максимальное количество сообщений в буфере одного лобби.
+     *
+     * @return размер буфера лобби или {@code 0}, если буфер отключён
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Добавляет разосланное сообщение в буфер его лобби.
+     * Переданный объект не должен изменяться после вызова.
+     *
+     * @param message сообщение с открытым текстом
+     */
+    public void append(ChatMessage message) {
+        if (!enabled) {
+            return;
+        }
+        rings.asMap().compute(message.getLobbyId(), (lobbyId, ring) -> {
+            LobbyRing target = ring != null ? ring : new LobbyRing(capacity);
+            target.add(message);
+            return target;
+        });
+    }
+
+    /**
+     * Заполняет буфер лобби самыми новыми сообщениями из базы данных.
+     * Сообщения, разосланные после чтения из базы данных, сохраняются.
+     *
+     * @param lobbyId  ID лобби
+     * @param newest   самые новые сообщения лобби по возрастанию ID
+     * @param complete {@code true}, если в {@code newest} вся история лобби
+     */
+    public void seed(Long lobbyId, List<ChatMessage> newest, boolean complete) {
+        if (!enabled) {
+            return;
+        }
+        rings.asMap().compute(lobbyId, (id, ring) -> {
+            LobbyRing target = ring != null ? ring : new LobbyRing(capacity);
+            target.seed(newest, complete);
+            return target;
+        });
+    }
+
+    /**
+     * Возвращает самую новую страницу сообщений лобби, если буфер может её отдать.
+     *
+     * @param lobbyId ID лобби
+     * @param limit   размер страницы
+     * @return страница по возрастанию ID или {@code null}, если страницу нужно читать из базы данных
+     */
+    public Snapshot latest(Long lobbyId, int limit) {
+        LobbyRing ring = rings.getIfPresent(lobbyId);
+        return ring != null ? ring.latest(limit) : null;
+    }
+
+    /**
+     * Удаляет буфер лобби.
+     *
+     * @param lobbyId ID лобби
+     */
+    public void invalidate(Long lobbyId) {
+        rings.invalidate(lobbyId);
+    }
+
+    /**
+     * Удаляет буферы всех лобби.
+     */
+    public void invalidateAll() {
+        rings.invalidateAll();
+    }
+
+    private static int estimateBytes(ChatMessage message) {
+        int chars = (message.getText() != null ? message.getText().length() : 0)
+                + (message.getSenderNickname() != null ? message.getSenderNickname().length() : 0);
+        return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    /**
+     * Страница из буфера.
+     *
+     * @param messages сообщения по возрастанию ID
+     * @param hasMore  есть ли в лобби сообщения старше страницы
+     */
+    public record Snapshot(List<ChatMessage> messages, boolean hasMore) {
+    }
+
+    /**
+     * Кольцевой буфер сообщений одного лобби, упорядоченный по ID.
+     * <p>
+     * До заполнения из базы данных буфер только накапливает разосланные сообщения и не отдаёт страницы.
+     * После заполнения он содержит все сообщения лобби с ID от самого старого в буфере до самого нового;
+     * признак {@code complete} означает, что старше сообщений в лобби нет.
+     * </p>
+     */
+    private static final class LobbyRing {
+
+        private final ChatMessage[] slots;
+        private int start;
+        private int size;
+        private long bytes;
+        private boolean seeded;
+        private boolean complete;
+
+        LobbyRing(int capacity) {
+            this.slots = new ChatMessage[capacity];
+        }
+
+        synchronized int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, bytes + 16L + 4L * slots.length);
+        }
+
+        synchronized void add(ChatMessage message) {
+            int position = size;
+            while (position > 0 && at(position - 1).getId() >= message.getId()) {
+                if (at(position - 1).getId().equals(message.getId())) {
+                    return;
+                }
+                position--;
+            }
+            // Сообщение старше начала непрерывного диапазона: между ним и буфером могут быть пропуски.
+            if (position == 0 && size > 0 && seeded && !complete) {
+                return;
+            }
+            if (size == slots.length) {
+                if (position == 0) {
+                    return;
+                }
+                evictOldest();
+                position--;
+            }
+            for (int i = size; i > position; i--) {
+                set(i, at(i - 1));
+            }
+            set(position, message);
+            size++;
+            bytes += estimateBytes(message);
+        }
+
+        synchronized void seed(List<ChatMessage> newest, boolean dbComplete) {
+            TreeMap<Long, ChatMessage> merged = new TreeMap<>();
+            for (ChatMessage message : newest) {
+                merged.put(message.getId(), message);
+            }
+            long oldestFromDb = newest.isEmpty() ? Long.MAX_VALUE : newest.get(0).getId();
+            for (int i = 0; i < size; i++) {
+                ChatMessage message = at(i);
+                if (dbComplete || message.getId() > oldestFromDb) {
+                    merged.putIfAbsent(message.getId(), message);
+                }
+            }
+
+            while (merged.size() > slots.length) {
+                merged.pollFirstEntry();
+                dbComplete = false;
+            }
+            Arrays.fill(slots, null);
+            start = 0;
+            size = 0;
+            bytes = 0;
+            for (ChatMessage message : merged.values()) {
+                slots[size++] = message;
+                bytes += estimateBytes(message);
+            }
+            seeded = true;
+            complete = dbComplete;
+        }
+
+        synchronized Snapshot latest(int limit) {
+            if (!seeded || (size <= limit && !complete)) {
+                return null;
+            }
+            int count = Math.min(limit, size);
+            List<ChatMessage> page = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                page.add(at(i));
+            }
+            return new Snapshot(page, size > limit);
+        }
+
+        private void evictOldest() {
+            bytes -= estimateBytes(slots[start]);
+            slots[start] = null;
+            start = (start + 1) % slots.length;
+            size--;
+            complete = false;
+        }
+
+        private ChatMessage at(int index) {
+            return slots[(start + index) % slots.length];
+        }
+
+        private void set(int index, ChatMessage message) {
+            slots[(start + index) % slots.length] = message;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.poltanov.forums.service;
+
+import jakarta.annotation.PreDestroy;
+import org.poltanov.forums.dto.LobbyUsers;
+import org.poltanov.forums.dto.TypingMessage;
+import org.poltanov.forums.util.ThreadFactories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индикаторы набора сообщения в лобби.
+ * <p>
+ * Состояние хранится только в памяти и не затрагивает базу данных. Сигналы пользователя в лобби учитываются
+ * не чаще одного раза за {@code chat.typing.interval-ms}. Раз в интервал для каждого лобби, в котором изменился
+ * состав набирающих, рассылается один {@link TypingMessage} с полным списком по адресу
+ * {@code /topic/lobby/{id}/typing}.
+ * </p>
+ * Истечение набора через {@code chat.typing.ttl-ms} без новых сигналов отслеживается колесом таймеров:
+ * каждый учтённый сигнал кладёт ключ в ячейку такта истечения, и за такт просматривается только одна ячейка.
+ * Устаревшие записи в ячейках после обновления сигнала просто пропускаются.
+ */
+@Service
+public class TypingIndicatorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TypingIndicatorService.class);
+
+    private final ChatEventPublisher eventPublisher;
+    private final UserProfileCache userProfileCache;
+    private final long intervalMs;
+    private final long ttlTicks;
+    private final Queue<TypingKey>[] wheel;
+    private final ScheduledExecutorService ticker;
+
+    private final Map<TypingKey, Typer> typers = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> lobbyTypers = new ConcurrentHashMap<>();
+    private final Set<Long> changedLobbies = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Текущий такт колеса. Изменяется только потоком таймера.
+     */
+    private volatile long tick;
+
+    /**
+     * Конструктор для создания экземпляра {@link TypingIndicatorService}.
+     *
+     * @param eventPublisher   сервис рассылки событий чата
+     * @param userProfileCache кэш никнеймов пользователей
+     * @param intervalMs       интервал учёта сигналов и рассылки в миллисекундах
+     * @param ttlMs            время, через которое набор без новых сигналов считается завершённым, в миллисекундах
+     */
+    @SuppressWarnings("unchecked")
+    public TypingIndicatorService(ChatEventPublisher eventPublisher, UserProfileCache userProfileCache,
+                                  @Value("${chat.typing.interval-ms:500}") long intervalMs,
+                                  @Value("${chat.typing.ttl-ms:3000}") long ttlMs) {
+        this.eventPublisher = eventPublisher;
+        this.userProfileCache = userProfileCache;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.ttlTicks = Math.max(1, (ttlMs + this.intervalMs - 1) / this.intervalMs);
+        this.wheel = new Queue[(int) ttlTicks + 2];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(ThreadFactories.named("typing-", false));
+        this.ticker.scheduleAtFixedRate(this::advance, this.intervalMs, this.intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает таймер.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Учитывает сигнал о наборе сообщения. Сигналы чаще интервала игнорируются.
+     *
+     * @param lobbyId ID лобби
+     * @param userId  ID пользователя
+     */
+    public void ping(Long lobbyId, Long userId) {
+        long now = System.nanoTime() / 1_000_000;
+        TypingKey key = new TypingKey(lobbyId, userId);
+        Typer[] accepted = new Typer[1];
+        boolean[] started = new boolean[1];
+        typers.compute(key, (k, typer) -> {
+            if (typer != null && now - typer.lastPingMs() < intervalMs) {
+                return typer;
+            }
+            started[0] = typer == null;
+            accepted[0] = new Typer(now, tick + ttlTicks);
+            return accepted[0];
+        });
+
+        if (accepted[0] != null) {
+            wheel[(int) (accepted[0].expiresTick() % wheel.length)].add(key);
+        }
+        if (started[0]) {
+            lobbyTypers.compute(lobbyId, (id, users) -> {
+                Set<Long> result = users != null ? users : ConcurrentHashMap.newKeySet();
+                result.add(userId);
+                return result;
+            });
+            changedLobbies.add(lobbyId);
+        }
+    }
+
+    /**
+     * Завершает набор сообщения пользователем, например после отправки сообщения.
+     *
+     * @param lobbyId ID лобби
+     * @param userId  ID пользователя
+     */
+    public void stop(Long lobbyId, Long userId) {
+        if (typers.remove(new TypingKey(lobbyId, userId)) != null) {
+            removeTyper(lobbyId, userId);
+        }
+    }
+
+    /**
+     * Возвращает пользователей, набирающих сообщение в лобби.
+     *
+     * @param lobbyId ID лобби
+     * @return ID пользователей
+     */
+    public Set<Long> getTypingUsers(Long lobbyId) {
+        Set<Long> users = lobbyTypers.get(lobbyId);
+        return users != null ? Set.copyOf(users) : Set.of();
+    }
+
+    /**
+     * Переходит к следующему такту: снимает истёкшие наборы и рассылает изменения.
+     */
+    void advance() {
+        try {
+            long current = tick + 1;
+            tick = current;
+            expire(current);
+            broadcastChanges();
+        } catch (Exception e) {
+            logger.error("Ошибка при обработке индикаторов набора: {}", e.getMessage(), e);
+        }
+    }
+
+    private void expire(long current) {
+        Queue<TypingKey> slot = wheel[(int) (current % wheel.length)];
+        for (int remaining = slot.size(); remaining > 0; remaining--) {
+            TypingKey key = slot.poll();
+            if (key == null) {
+                break;
+            }
+            Typer typer = typers.get(key);
+            if (typer == null) {
+                continue;
+            }
+            if (typer.expiresTick() > current) {
+                // Набор продлён, актуальная запись лежит в другой ячейке.
+                continue;
+            }
+            if (typers.remove(key, typer)) {
+                removeTyper(key.lobbyId(), key.userId());
+            }
+        }
+    }
+
+    private void broadcastChanges() {
+        Iterator<Long> iterator = changedLobbies.iterator();
+        while (iterator.hasNext()) {
+            Long lobbyId = iterator.next();
+            iterator.remove();
+            Map<Long, String> nicknames = userProfileCache.getNicknames(getTypingUsers(lobbyId));
+            List<LobbyUsers> users = new ArrayList<>(nicknames.size());
+            nicknames.forEach((userId, nickname) -> users.add(new LobbyUsers(userId, nickname, true)));
+            eventPublisher.publishTransient(ChatEventPublisher.lobbyTypingDestination(lobbyId), new TypingMessage(users));
+        }
+    }
+
+    private void removeTyper(Long lobbyId, Long userId) {
+        lobbyTypers.computeIfPresent(lobbyId, (id, users) -> {
+            users.remove(userId);
+            return users.isEmpty() ? null : users;
+        });
+        changedLobbies.add(lobbyId);
+    }
+
+    /**
+     * Пользователь в лобби.
+     *
+     * @param lobbyId ID лобби
+     * @param userId  ID пользователя
+     */
+    private record TypingKey(Long lobbyId, Long userId) {
+    }
+
+    /**
+     * Состояние набора.
+     *
+     * @param lastPingMs  время последнего учтённого сигнала в миллисекундах монотонных часов
+     * @param expiresTick такт, на котором набор завершится без новых сигналов
+     */
+    private record Typer(long lastPingMs, long expiresTick) {
+    }
+}
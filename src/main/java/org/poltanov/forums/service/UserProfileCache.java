@@ -0,0 +1,104 @@
+package org.poltanov.forums.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.poltanov.forums.model.User;
+import org.poltanov.forums.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш профилей пользователей (ID → никнейм) в памяти процесса.
+ * <p>
+ * Ограничен по количеству записей, при переполнении вытесняются редко используемые записи.
+ * Промахи при пакетном запросе загружаются одним запросом {@code findAllById}.
+ * Запись пользователя сбрасывается при смене никнейма на узле, который её выполнил. Остальные узлы кластера
+ * об этом не знают, поэтому каждая запись живёт не дольше {@code chat.cache.user-profiles.ttl-ms}: столько
+ * другие узлы могут показывать старый никнейм.
+ * </p>
+ */
+@Component
+public class UserProfileCache {
+
+    /**
+     * Никнейм, который отображается для неизвестного пользователя или пользователя без никнейма.
+     */
+    public static final String UNKNOWN_NICKNAME = "Unknown";
+
+    private final UserRepository userRepository;
+    private final Cache<Long, String> nicknames;
+
+    /**
+     * Конструктор для создания экземпляра {@link UserProfileCache}.
+     *
+     * @param userRepository репозиторий для загрузки пользователей при промахе
+     * @param maxSize        максимальное количество профилей в кэше
+     * @param ttlMs          время жизни записи в миллисекундах
+     */
+    public UserProfileCache(UserRepository userRepository,
+                            @Value("${chat.cache.user-profiles.max-size:10000}") long maxSize,
+                            @Value("${chat.cache.user-profiles.ttl-ms:60000}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.nicknames = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Math.max(1, ttlMs), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Возвращает никнейм пользователя.
+     *
+     * @param userId ID пользователя
+     * @return никнейм или {@link #UNKNOWN_NICKNAME}, если пользователь не найден
+     */
+    public String getNickname(Long userId) {
+        if (userId == null) {
+            return UNKNOWN_NICKNAME;
+        }
+        String nickname = nicknames.get(userId, id -> userRepository.findById(id)
+                .map(UserProfileCache::nicknameOf)
+                .orElse(null));
+        return nickname != null ? nickname : UNKNOWN_NICKNAME;
+    }
+
+    /**
+     * Возвращает никнеймы для набора пользователей. Отсутствующие в кэше профили загружаются одним запросом.
+     *
+     * @param userIds ID пользователей
+     * @return отображение ID пользователя в никнейм; для неизвестных пользователей — {@link #UNKNOWN_NICKNAME}
+     */
+    public Map<Long, String> getNicknames(Collection<Long> userIds) {
+        Map<Long, String> found = nicknames.getAll(userIds, missing -> {
+            Map<Long, String> loaded = new HashMap<>();
+            for (User user : userRepository.findAllById(new ArrayList<>(missing))) {
+                loaded.put(user.getId(), nicknameOf(user));
+            }
+            return loaded;
+        });
+
+        Map<Long, String> result = new HashMap<>(found);
+        for (Long userId : userIds) {
+            result.putIfAbsent(userId, UNKNOWN_NICKNAME);
+        }
+        return result;
+    }
+
+    /**
+     * Сбрасывает профиль пользователя, чтобы следующее обращение загрузило актуальные данные.
+     *
+     * @param userId ID пользователя
+     */
+    public void invalidate(Long userId) {
+        nicknames.invalidate(userId);
+    }
+
+    private static String nicknameOf(User user) {
+        return user.getNickname() != null ? user.getNickname() : UNKNOWN_NICKNAME;
+    }
+}
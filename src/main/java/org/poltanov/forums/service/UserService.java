@@ -12,14 +12,17 @@ import org.springframework.stereotype.Service;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
 
     /**
      * Конструктор для создания экземпляра {@link UserService}.
      *
-     * @param userRepository репозиторий для управления пользователями
+     * @param userRepository   репозиторий для управления пользователями
+     * @param userProfileCache кэш никнеймов, который сбрасывается при смене никнейма
      */
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserProfileCache userProfileCache) {
         this.userRepository = userRepository;
+        this.userProfileCache = userProfileCache;
     }
 
     /**
@@ -34,6 +37,7 @@ public class UserService {
         if (user != null) {
             user.setNickname(newNickname);
             userRepository.save(user);
+            userProfileCache.invalidate(userId);
             return true;
         }
         return false;
@@ -0,0 +1,116 @@
+package org.poltanov.forums.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кодек сообщений на основе AES-GCM.
+ * <p>
+ * Формат хранимого представления: байт версии, 12 байт случайного вектора инициализации,
+ * шифртекст с 16-байтовым тегом аутентичности. Результат хранится в столбце {@code bytea} без Base64.
+ * Экземпляры {@link Cipher} привязаны к потоку и переиспользуются между вызовами.
+ * </p>
+ */
+@Primary
+@Component
+public class AesGcmMessageCodec implements MessageCodec {
+
+    /**
+     * Версия формата хранимого представления.
+     */
+    static final byte FORMAT_VERSION = 1;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int HEADER_LENGTH = 1 + IV_LENGTH;
+
+    private final SecretKeySpec keySpec;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(AesGcmMessageCodec::newCipher);
+
+    /**
+     * Конструктор для создания экземпляра {@link AesGcmMessageCodec}.
+     *
+     * @param key ключ шифрования длиной 16, 24 или 32 байта
+     */
+    public AesGcmMessageCodec(@Value("${chat.crypto.key:MySuperSecretKey}") String key) {
+        this.keySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "AES");
+    }
+
+    @Override
+    public byte[] encode(String plainText) throws GeneralSecurityException {
+        return encode(ciphers.get(), plainText);
+    }
+
+    @Override
+    public String decode(byte[] payload) throws GeneralSecurityException {
+        return decode(ciphers.get(), payload);
+    }
+
+    @Override
+    public List<byte[]> encodeAll(List<String> plainTexts) throws GeneralSecurityException {
+        Cipher cipher = ciphers.get();
+        List<byte[]> encoded = new ArrayList<>(plainTexts.size());
+        for (String plainText : plainTexts) {
+            encoded.add(encode(cipher, plainText));
+        }
+        return encoded;
+    }
+
+    @Override
+    public List<String> decodeAll(List<byte[]> payloads) {
+        Cipher cipher = ciphers.get();
+        List<String> decoded = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            try {
+                decoded.add(decode(cipher, payload));
+            } catch (GeneralSecurityException | RuntimeException e) {
+                decoded.add(null);
+            }
+        }
+        return decoded;
+    }
+
+    private byte[] encode(Cipher cipher, String plainText) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+
+        byte[] plain = plainText.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[HEADER_LENGTH + cipher.getOutputSize(plain.length)];
+        payload[0] = FORMAT_VERSION;
+        System.arraycopy(iv, 0, payload, 1, IV_LENGTH);
+        cipher.doFinal(plain, 0, plain.length, payload, HEADER_LENGTH);
+        return payload;
+    }
+
+    private String decode(Cipher cipher, byte[] payload) throws GeneralSecurityException {
+        if (payload == null || payload.length <= HEADER_LENGTH || payload[0] != FORMAT_VERSION) {
+            throw new GeneralSecurityException("Неподдерживаемый формат зашифрованного сообщения.");
+        }
+        cipher.init(Cipher.DECRYPT_MODE, keySpec, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 1, IV_LENGTH));
+        byte[] plain = cipher.doFinal(payload, HEADER_LENGTH, payload.length - HEADER_LENGTH);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException("AES-GCM недоступен в этой JVM.", e);
+        }
+    }
+}
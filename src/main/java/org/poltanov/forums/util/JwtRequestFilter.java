@@ -2,6 +2,7 @@ package org.poltanov.forums.util;
 
 import org.poltanov.forums.service.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -20,25 +21,38 @@ import org.slf4j.LoggerFactory;
  * Фильтр для обработки JWT токенов в каждом HTTP запросе.
  * Извлекает и валидирует JWT токен из заголовка Authorization.
  * Если токен валиден, устанавливает аутентификацию пользователя в контексте безопасности.
+ * <p>
+ * Токен проверяется один раз и кэшируется до истечения срока действия. При {@code jwt.claims-authentication=true}
+ * аутентификация строится из утверждений токена без обращения к таблице {@code users}.
+ * </p>
  */
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtRequestFilter.class);
 
-    private final JwtUtil jwtUtil;
+    /**
+     * Атрибут запроса с ID пользователя из проверенного токена.
+     */
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    private final VerifiedTokenCache verifiedTokenCache;
     private final UserDetailsServiceImpl userDetailsService;
+    private final boolean claimsAuthentication;
 
     /**
      * Конструктор для создания экземпляра {@link JwtRequestFilter}.
      *
-     * @param jwtUtil             утилита для работы с JWT токенами
-     * @param userDetailsService  сервис для загрузки деталей пользователя
+     * @param verifiedTokenCache   кэш проверенных JWT токенов
+     * @param userDetailsService   сервис для загрузки деталей пользователя
+     * @param claimsAuthentication строить ли аутентификацию из утверждений токена без загрузки пользователя
      */
     @Autowired
-    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsServiceImpl userDetailsService) {
-        this.jwtUtil = jwtUtil;
+    public JwtRequestFilter(VerifiedTokenCache verifiedTokenCache, UserDetailsServiceImpl userDetailsService,
+                            @Value("${jwt.claims-authentication:false}") boolean claimsAuthentication) {
+        this.verifiedTokenCache = verifiedTokenCache;
         this.userDetailsService = userDetailsService;
+        this.claimsAuthentication = claimsAuthentication;
     }
 
     /**
@@ -56,29 +70,30 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        JwtUserPrincipal principal = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
-                logger.error("Не удалось извлечь имя пользователя из токена", e);
+            String jwt = authorizationHeader.substring(7);
+            principal = verifiedTokenCache.verify(jwt);
+            if (principal == null) {
+                logger.warn("Получен недействительный JWT токен");
+            } else if (principal.getUserId() != null) {
+                request.setAttribute(USER_ID_ATTRIBUTE, principal.getUserId());
             }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (principal != null && principal.getUsername() != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = claimsAuthentication
+                    ? principal
+                    : this.userDetailsService.loadUserByUsername(principal.getUsername());
 
-            if (jwtUtil.validateToken(jwt)) {
-                UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
+            UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
 
-                authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
-            }
+            SecurityContextHolder.getContext().setAuthentication(authenticationToken);
         }
 
         filterChain.doFilter(request, response);
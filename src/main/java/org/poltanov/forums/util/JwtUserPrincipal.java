@@ -0,0 +1,62 @@
+package org.poltanov.forums.util;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Данные пользователя, восстановленные из утверждений проверенного JWT токена.
+ * Используется как субъект аутентификации без обращения к базе данных.
+ */
+@Getter
+public class JwtUserPrincipal implements UserDetails {
+
+    private static final List<GrantedAuthority> AUTHORITIES = AuthorityUtils.createAuthorityList("USER");
+
+    /**
+     * Идентификатор пользователя из утверждения {@code userId}.
+     */
+    private final Long userId;
+
+    /**
+     * Имя пользователя из субъекта токена.
+     */
+    private final String username;
+
+    /**
+     * Никнейм пользователя из утверждения {@code nickname} на момент выпуска токена.
+     */
+    private final String nickname;
+
+    /**
+     * Конструктор для создания экземпляра JwtUserPrincipal с указанными параметрами.
+     *
+     * @param userId   Идентификатор пользователя.
+     * @param username Имя пользователя.
+     * @param nickname Никнейм пользователя.
+     */
+    public JwtUserPrincipal(Long userId, String username, String nickname) {
+        this.userId = userId;
+        this.username = username;
+        this.nickname = nickname;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+
+    /**
+     * Пароль не хранится в токене.
+     *
+     * @return всегда {@code null}
+     */
+    @Override
+    public String getPassword() {
+        return null;
+    }
+}
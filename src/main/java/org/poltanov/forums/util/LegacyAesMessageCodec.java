@@ -0,0 +1,88 @@
+package org.poltanov.forums.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Кодек сообщений устаревшего формата: AES в режиме по умолчанию ({@code "AES"}, то есть ECB)
+ * с результатом в Base64, который хранится в текстовом столбце {@code text}.
+ * <p>
+ * Используется только для чтения сообщений, сохранённых до перехода на {@link AesGcmMessageCodec}.
+ * Ключ и экземпляры {@link Cipher} создаются один раз и переиспользуются.
+ * </p>
+ */
+@Component
+public class LegacyAesMessageCodec implements MessageCodec {
+
+    private static final String ALGORITHM = "AES";
+
+    private final SecretKeySpec keySpec;
+    private final ThreadLocal<Cipher> decryptCiphers = ThreadLocal.withInitial(() -> newCipher(Cipher.DECRYPT_MODE));
+    private final ThreadLocal<Cipher> encryptCiphers = ThreadLocal.withInitial(() -> newCipher(Cipher.ENCRYPT_MODE));
+
+    /**
+     * Конструктор для создания экземпляра {@link LegacyAesMessageCodec}.
+     *
+     * @param key ключ, которым были зашифрованы сообщения устаревшего формата
+     */
+    public LegacyAesMessageCodec(@Value("${chat.crypto.legacy-key:MySuperSecretKey}") String key) {
+        this.keySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Кодирует текст в устаревший формат. Возвращает Base64-строку в кодировке UTF-8.
+     *
+     * @param plainText открытый текст
+     * @return Base64-представление шифртекста
+     * @throws GeneralSecurityException если шифрование не удалось
+     */
+    @Override
+    public byte[] encode(String plainText) throws GeneralSecurityException {
+        byte[] encrypted = encryptCiphers.get().doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encode(encrypted);
+    }
+
+    /**
+     * Декодирует Base64-представление шифртекста, переданное в виде байтов.
+     *
+     * @param payload Base64-представление шифртекста
+     * @return открытый текст
+     * @throws GeneralSecurityException если расшифровка не удалась
+     */
+    @Override
+    public String decode(byte[] payload) throws GeneralSecurityException {
+        byte[] original = decryptCiphers.get().doFinal(Base64.getDecoder().decode(payload));
+        return new String(original, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Декодирует значение столбца {@code text} устаревшего формата.
+     *
+     * @param encrypted Base64-представление шифртекста
+     * @return открытый текст
+     * @throws GeneralSecurityException если расшифровка не удалась
+     */
+    public String decodeText(String encrypted) throws GeneralSecurityException {
+        return decode(encrypted.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Cipher newCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, keySpec);
+            return cipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException("AES недоступен в этой JVM.", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Недопустимый ключ шифрования сообщений.", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.poltanov.forums.util;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кодек текста сообщений для хранения в базе данных.
+ * Определяет преобразование открытого текста в хранимое представление и обратно,
+ * а также пакетные варианты для обработки страницы истории за один проход.
+ */
+public interface MessageCodec {
+
+    /**
+     * Кодирует открытый текст сообщения.
+     *
+     * @param plainText открытый текст
+     * @return хранимое представление
+     * @throws GeneralSecurityException если кодирование не удалось
+     */
+    byte[] encode(String plainText) throws GeneralSecurityException;
+
+    /**
+     * Декодирует хранимое представление сообщения.
+     *
+     * @param payload хранимое представление
+     * @return открытый текст
+     * @throws GeneralSecurityException если payload повреждён или подделан
+     */
+    String decode(byte[] payload) throws GeneralSecurityException;
+
+    /**
+     * Кодирует набор сообщений.
+     *
+     * @param plainTexts открытые тексты
+     * @return хранимые представления в том же порядке
+     * @throws GeneralSecurityException если кодирование хотя бы одного сообщения не удалось
+     */
+    default List<byte[]> encodeAll(List<String> plainTexts) throws GeneralSecurityException {
+        List<byte[]> encoded = new ArrayList<>(plainTexts.size());
+        for (String plainText : plainTexts) {
+            encoded.add(encode(plainText));
+        }
+        return encoded;
+    }
+
+    /**
+     * Декодирует набор сообщений. Ошибка в одном сообщении не прерывает обработку остальных.
+     *
+     * @param payloads хранимые представления
+     * @return открытые тексты в том же порядке; {@code null} для сообщений, которые не удалось декодировать
+     */
+    default List<String> decodeAll(List<byte[]> payloads) {
+        List<String> decoded = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            try {
+                decoded.add(decode(payload));
+            } catch (GeneralSecurityException | RuntimeException e) {
+                decoded.add(null);
+            }
+        }
+        return decoded;
+    }
+}
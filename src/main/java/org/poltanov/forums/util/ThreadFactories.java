@@ -0,0 +1,65 @@
+package org.poltanov.forums.util;
+
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрики потоков для собственных исполнителей приложения.
+ * <p>
+ * Виртуальные потоки используются, только если они запрошены свойством {@code spring.threads.virtual.enabled}
+ * и приложение запущено на Java 21 или новее; иначе создаются обычные потоки-демоны.
+ * </p>
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * Проверяет, поддерживает ли текущая JVM виртуальные потоки.
+     *
+     * @return {@code true} для Java 21 и новее
+     */
+    public static boolean virtualThreadsSupported() {
+        return JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+    }
+
+    /**
+     * Создаёт фабрику потоков с нумерованными именами.
+     *
+     * @param prefix  префикс имени потока
+     * @param virtual создавать ли виртуальные потоки, если JVM их поддерживает
+     * @return фабрика потоков
+     */
+    public static ThreadFactory named(String prefix, boolean virtual) {
+        if (virtual && virtualThreadsSupported()) {
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Создаёт исполнитель, запускающий каждую задачу в новом виртуальном потоке.
+     *
+     * @param prefix префикс имени потока
+     * @return исполнитель или {@code null}, если JVM не поддерживает виртуальные потоки
+     */
+    public static TaskExecutor virtualTaskExecutor(String prefix) {
+        if (!virtualThreadsSupported()) {
+            return null;
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+}
@@ -0,0 +1,96 @@
+package org.poltanov.forums.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш проверенных JWT токенов.
+ * <p>
+ * Подпись токена проверяется один раз, после чего токен хранится до истечения срока его действия.
+ * Размер кэша ограничен, недействительные токены не кэшируются.
+ * </p>
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerifiedTokenCache.class);
+
+    private final JwtUtil jwtUtil;
+    private final Cache<String, VerifiedToken> tokens;
+
+    /**
+     * Конструктор для создания экземпляра {@link VerifiedTokenCache}.
+     *
+     * @param jwtUtil утилита для проверки JWT токенов
+     * @param maxSize максимальное количество токенов в кэше
+     */
+    public VerifiedTokenCache(JwtUtil jwtUtil, @Value("${jwt.cache.max-size:10000}") long maxSize) {
+        this.jwtUtil = jwtUtil;
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long millisLeft = value.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(millisLeft, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Проверяет токен и возвращает данные пользователя из его утверждений.
+     *
+     * @param token JWT токен
+     * @return данные пользователя или {@code null}, если токен недействителен или истёк
+     */
+    public JwtUserPrincipal verify(String token) {
+        VerifiedToken cached = tokens.getIfPresent(token);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return cached.principal();
+        }
+
+        Claims claims;
+        try {
+            claims = jwtUtil.extractClaims(token);
+        } catch (Exception e) {
+            logger.debug("Недействительный JWT токен: {}", e.getMessage());
+            return null;
+        }
+
+        JwtUserPrincipal principal = new JwtUserPrincipal(
+                claims.get("userId", Long.class),
+                claims.getSubject(),
+                claims.get("nickname", String.class));
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        tokens.put(token, new VerifiedToken(principal, expiresAt));
+        return principal;
+    }
+
+    /**
+     * Проверенный токен и момент истечения его срока действия.
+     *
+     * @param principal       данные пользователя из утверждений токена
+     * @param expiresAtMillis момент истечения срока действия в миллисекундах эпохи
+     */
+    private record VerifiedToken(JwtUserPrincipal principal, long expiresAtMillis) {
+    }
+}
@@ -10,4 +10,52 @@ CREATE TABLE IF NOT EXISTS lobbies (
     name VARCHAR(255) NOT NULL,
     creator_id BIGINT NOT NULL
 );
-    
\ No newline at end of file
+    
+
+CREATE TABLE IF NOT EXISTS messages (
+    id BIGSERIAL,
+    lobby_id BIGINT NOT NULL REFERENCES lobbies(id) ON DELETE CASCADE,
+    text TEXT,
+    body BYTEA,
+    sender_id BIGINT NOT NULL REFERENCES users(id),
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (lobby_id, id)
+) PARTITION BY HASH (lobby_id);
+
+CREATE TABLE IF NOT EXISTS messages_p0 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 0);
+CREATE TABLE IF NOT EXISTS messages_p1 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 1);
+CREATE TABLE IF NOT EXISTS messages_p2 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 2);
+CREATE TABLE IF NOT EXISTS messages_p3 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 3);
+CREATE TABLE IF NOT EXISTS messages_p4 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 4);
+CREATE TABLE IF NOT EXISTS messages_p5 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 5);
+CREATE TABLE IF NOT EXISTS messages_p6 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 6);
+CREATE TABLE IF NOT EXISTS messages_p7 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 7);
+CREATE TABLE IF NOT EXISTS messages_p8 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 8);
+CREATE TABLE IF NOT EXISTS messages_p9 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 9);
+CREATE TABLE IF NOT EXISTS messages_p10 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 10);
+CREATE TABLE IF NOT EXISTS messages_p11 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 11);
+CREATE TABLE IF NOT EXISTS messages_p12 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 12);
+CREATE TABLE IF NOT EXISTS messages_p13 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 13);
+CREATE TABLE IF NOT EXISTS messages_p14 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 14);
+CREATE TABLE IF NOT EXISTS messages_p15 PARTITION OF messages FOR VALUES WITH (MODULUS 16, REMAINDER 15);
+
+CREATE TABLE IF NOT EXISTS lobby_members (
+    lobby_id BIGINT NOT NULL REFERENCES lobbies(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    PRIMARY KEY (lobby_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS lobby_members_user_id_idx ON lobby_members (user_id);
+
+CREATE TABLE IF NOT EXISTS lobby_read_cursors (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    lobby_id BIGINT NOT NULL REFERENCES lobbies(id) ON DELETE CASCADE,
+    last_read_message_id BIGINT NOT NULL,
+    PRIMARY KEY (user_id, lobby_id)
+);
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS body BYTEA;
+ALTER TABLE messages ALTER COLUMN text DROP NOT NULL;
+ALTER TABLE lobbies ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS lobbies_deleted_at_idx ON lobbies (deleted_at) WHERE deleted_at IS NOT NULL;
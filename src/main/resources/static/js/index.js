@@ -5,7 +5,15 @@ let senderNickname = null;
 let lobbyId = null;
 let stompSubscription = null;
 let participantSubscription = null;
+let typingSubscription = null;
+let lastTypingPing = 0;
 let currentLobbyCreatorId = null;
+let olderMessagesCursor = null;
+let hasOlderMessages = false;
+let loadingOlderMessages = false;
+let lastReadMessageId = 0;
+let readCursorTimer = null;
+let pendingReadCursor = null;
 
 let isLobbyCreator = false;
 
@@ -31,6 +39,11 @@ function connect() {
     stompClient.connect({}, function (frame) {
         console.log('Connected: ' + frame);
 
+        stompClient.subscribe('/user/queue/errors', function (errorOutput) {
+            const error = JSON.parse(errorOutput.body);
+            console.warn('Сообщение не отправлено:', error.message);
+        });
+
         stompClient.subscribe('/topic/lobbies', function (lobbyOutput) {
             const message = JSON.parse(lobbyOutput.body);
             console.log('Получено сообщение лобби:', message);
@@ -61,6 +74,7 @@ function loadLobbyList() {
             data.forEach(function(lobby) {
                 addLobbyToList(lobby);
             });
+            loadUnreadCounts();
         })
         .catch(error => console.error('Ошибка при загрузке списка лобби:', error));
 }
@@ -77,6 +91,7 @@ async function selectLobby(selectedLobbyId, lobbyName, lobbyCreatorId) {
 
     lobbyId = selectedLobbyId;
     currentLobbyCreatorId = lobbyCreatorId;
+    lastReadMessageId = 0;
 
     isLobbyCreator = (senderId === lobbyCreatorId);
     const deleteLobbyButton = document.getElementById('deleteLobbyButton');
@@ -101,11 +116,16 @@ async function selectLobby(selectedLobbyId, lobbyName, lobbyCreatorId) {
         participantSubscription.unsubscribe();
         participantSubscription = null;
     }
+    if (typingSubscription) {
+        typingSubscription.unsubscribe();
+        typingSubscription = null;
+    }
 
     stompSubscription = stompClient.subscribe('/topic/lobby/' + lobbyId + '/messages', function(messageOutput) {
         const message = JSON.parse(messageOutput.body);
         console.log('Получено сообщение чата:', message);
         showMessage(message);
+        markRead(message.id);
     });
 
     participantSubscription = stompClient.subscribe('/topic/lobby/' + lobbyId + '/participants', function(participantOutput) {
@@ -115,9 +135,16 @@ async function selectLobby(selectedLobbyId, lobbyName, lobbyCreatorId) {
             addParticipant(participantMessage);
         } else if (participantMessage.type === 'PARTICIPANT_LEFT') {
             removeParticipant(participantMessage.userId);
+        } else if (participantMessage.type === 'PRESENCE_CHANGED') {
+            participantMessage.online.forEach(userId => setParticipantOnline(userId, true));
+            participantMessage.offline.forEach(userId => setParticipantOnline(userId, false));
         }
     });
 
+    typingSubscription = stompClient.subscribe('/topic/lobby/' + lobbyId + '/typing', function(typingOutput) {
+        showTypingUsers(JSON.parse(typingOutput.body).users);
+    });
+
     try {
         const response = await fetch('/messages/lobby/' + lobbyId, {
             headers: {
@@ -128,10 +155,13 @@ async function selectLobby(selectedLobbyId, lobbyName, lobbyCreatorId) {
             const errorText = await response.text();
             throw new Error(errorText);
         }
-        const messages = await response.json();
-        messages.forEach(function(message) {
+        const page = await response.json();
+        page.messages.forEach(function(message) {
             showMessage(message);
+            markRead(message.id);
         });
+        olderMessagesCursor = page.nextCursor;
+        hasOlderMessages = page.hasMore;
         const messagesDiv = document.getElementById('messages');
         messagesDiv.scrollTop = messagesDiv.scrollHeight;
     } catch (error) {
@@ -176,7 +206,108 @@ function addLobbyToList(lobby) {
     lobbyListDiv.appendChild(lobbyElement);
 }
 
-function showMessage(message) {
+function loadOlderMessages() {
+    if (!lobbyId || !hasOlderMessages || loadingOlderMessages) {
+        return;
+    }
+    loadingOlderMessages = true;
+    const requestedLobbyId = lobbyId;
+
+    fetch('/messages/lobby/' + lobbyId + '?before=' + olderMessagesCursor, {
+        headers: {
+            'Authorization': 'Bearer ' + jwtToken
+        }
+    })
+        .then(response => {
+            if (!response.ok) {
+                return response.text().then(text => { throw new Error(text); });
+            }
+            return response.json();
+        })
+        .then(page => {
+            if (requestedLobbyId !== lobbyId) {
+                return;
+            }
+            const messagesDiv = document.getElementById('messages');
+            const previousHeight = messagesDiv.scrollHeight;
+            page.messages.slice().reverse().forEach(function(message) {
+                showMessage(message, true);
+            });
+            messagesDiv.scrollTop += messagesDiv.scrollHeight - previousHeight;
+            olderMessagesCursor = page.nextCursor;
+            hasOlderMessages = page.hasMore;
+        })
+        .catch(error => console.error('Ошибка при загрузке предыдущих сообщений:', error))
+        .finally(() => {
+            loadingOlderMessages = false;
+        });
+}
+
+function loadUnreadCounts() {
+    fetch('/lobby/unread', {
+        headers: {
+            'Authorization': 'Bearer ' + jwtToken
+        }
+    })
+        .then(response => response.json())
+        .then(counts => {
+            Object.entries(counts).forEach(([id, count]) => setUnreadCount(Number(id), count));
+        })
+        .catch(error => console.error('Ошибка при загрузке непрочитанных сообщений:', error));
+}
+
+function setUnreadCount(id, count) {
+    const lobbyElement = document.getElementById('lobby-' + id);
+    if (!lobbyElement) {
+        return;
+    }
+    let badge = lobbyElement.querySelector('.unread-badge');
+    if (count > 0 && id !== lobbyId) {
+        if (!badge) {
+            badge = document.createElement('span');
+            badge.classList.add('unread-badge');
+            lobbyElement.appendChild(badge);
+        }
+        badge.textContent = count;
+    } else if (badge) {
+        badge.remove();
+    }
+}
+
+function markRead(messageId) {
+    if (!lobbyId || !messageId || messageId <= lastReadMessageId) {
+        return;
+    }
+    lastReadMessageId = messageId;
+    setUnreadCount(lobbyId, 0);
+    if (pendingReadCursor && pendingReadCursor.lobbyId !== lobbyId) {
+        flushReadCursor();
+    }
+    pendingReadCursor = { lobbyId: lobbyId, messageId: messageId };
+    if (!readCursorTimer) {
+        readCursorTimer = setTimeout(flushReadCursor, 1000);
+    }
+}
+
+function flushReadCursor() {
+    clearTimeout(readCursorTimer);
+    readCursorTimer = null;
+    const cursor = pendingReadCursor;
+    pendingReadCursor = null;
+    if (!cursor) {
+        return;
+    }
+    fetch('/lobby/' + cursor.lobbyId + '/read', {
+        method: 'POST',
+        headers: {
+            'Content-Type': 'application/json',
+            'Authorization': 'Bearer ' + jwtToken
+        },
+        body: JSON.stringify({ messageId: cursor.messageId })
+    }).catch(error => console.error('Ошибка при сохранении курсора прочтения:', error));
+}
+
+function showMessage(message, prepend = false) {
     const messagesDiv = document.getElementById('messages');
 
     const isAtBottom = messagesDiv.scrollHeight - messagesDiv.scrollTop <= messagesDiv.clientHeight + 50;
@@ -213,6 +344,11 @@ function showMessage(message) {
         messageDiv.classList.add('show');
     });
 
+    if (prepend) {
+        messagesDiv.insertBefore(messageDiv, messagesDiv.firstChild);
+        return;
+    }
+
     messagesDiv.appendChild(messageDiv);
 
     if (isAtBottom) {
@@ -240,6 +376,28 @@ function sendMessage() {
     };
     stompClient.send("/app/chat.sendMessage", {}, JSON.stringify(message));
     document.getElementById('messageInput').value = '';
+    lastTypingPing = 0;
+}
+
+function handleTyping() {
+    const now = Date.now();
+    if (!lobbyId || !stompClient || now - lastTypingPing < 1000) {
+        return;
+    }
+    lastTypingPing = now;
+    stompClient.send("/app/chat.typing", {}, JSON.stringify({ lobbyId: lobbyId, typing: true }));
+}
+
+function showTypingUsers(users) {
+    const others = users.filter(user => user.userId !== senderId).map(user => user.nickname);
+    const indicator = document.getElementById('typingIndicator');
+    if (others.length === 0) {
+        indicator.textContent = '';
+    } else if (others.length === 1) {
+        indicator.textContent = others[0] + ' печатает...';
+    } else {
+        indicator.textContent = others.join(', ') + ' печатают...';
+    }
 }
 
 function handleKeyDown(event) {
@@ -327,10 +485,17 @@ function closeChat() {
         participantSubscription.unsubscribe();
         participantSubscription = null;
     }
+    if (typingSubscription) {
+        typingSubscription.unsubscribe();
+        typingSubscription = null;
+    }
+    document.getElementById('typingIndicator').textContent = '';
 
     document.querySelector('.chat-container').style.display = 'none';
     lobbyId = null;
     currentLobbyCreatorId = null;
+    olderMessagesCursor = null;
+    hasOlderMessages = false;
     document.getElementById('currentLobbyName').innerText = '';
     document.getElementById('deleteLobbyButton').style.display = 'none';
     document.getElementById('participantsList').innerHTML = '';
@@ -349,6 +514,12 @@ window.onload = function() {
         connect();
         loadLobbyList();
     }
+
+    document.getElementById('messages').addEventListener('scroll', function() {
+        if (this.scrollTop < 50) {
+            loadOlderMessages();
+        }
+    });
 }
 
 function joinLobby(lobbyId) {
@@ -403,6 +574,10 @@ function loadParticipants(lobbyId) {
                     participantElement.classList.add('admin');
                 }
 
+                if (participant.online) {
+                    participantElement.classList.add('online');
+                }
+
                 participantElement.textContent = participant.nickname;
                 participantsList.appendChild(participantElement);
             });
@@ -429,6 +604,13 @@ function addParticipant(participant) {
     participantsList.appendChild(participantElement);
 }
 
+function setParticipantOnline(userId, online) {
+    const participantElement = document.getElementById('participant-' + userId);
+    if (participantElement) {
+        participantElement.classList.toggle('online', online);
+    }
+}
+
 function removeParticipant(userId) {
     const participantElement = document.getElementById('participant-' + userId);
     if (participantElement) {
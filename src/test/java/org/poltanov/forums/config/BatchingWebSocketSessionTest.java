@@ -0,0 +1,74 @@
+package org.poltanov.forums.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchingWebSocketSessionTest {
+
+    private static OutboundSessionPolicy policy(long maxQueuedBytes, String overflow) {
+        return new OutboundSessionPolicy(60_000, maxQueuedBytes, 10_000, overflow,
+                List.of("/topic/lobbies", "/topic/lobby/*/participants"), 1, false, new SimpleMeterRegistry());
+    }
+
+    private static TextMessage frame(String destination, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:sub-0\n\n" + body + "\0");
+    }
+
+    private static WebSocketSession delegate() {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("s1");
+        when(delegate.isOpen()).thenReturn(true);
+        return delegate;
+    }
+
+    @Test
+    void pendingFramesAreWrittenAsOneMessage() throws Exception {
+        WebSocketSession delegate = delegate();
+        BatchingWebSocketSession session = new BatchingWebSocketSession(delegate, policy(1 << 20, "disconnect"));
+
+        session.sendMessage(frame("/topic/lobby/1/messages", "a"));
+        session.sendMessage(frame("/topic/lobby/1/messages", "b"));
+        session.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(delegate, times(1)).sendMessage(sent.capture());
+        assertEquals(frame("/topic/lobby/1/messages", "a").getPayload() + frame("/topic/lobby/1/messages", "b").getPayload(),
+                sent.getValue().getPayload());
+    }
+
+    @Test
+    void overflowDropsOldestPresenceFramesBeforeDisconnecting() throws Exception {
+        WebSocketSession delegate = delegate();
+        TextMessage message = frame("/topic/lobby/1/messages", "hello");
+        TextMessage presence = frame("/topic/lobby/1/participants", "joined");
+        BatchingWebSocketSession session = new BatchingWebSocketSession(delegate,
+                policy(message.getPayloadLength() + presence.getPayloadLength(), "drop-droppable"));
+
+        session.sendMessage(presence);
+        session.sendMessage(message);
+        session.sendMessage(frame("/topic/lobby/1/participants", "left"));
+
+        assertEquals(2, session.getQueuedMessages());
+        verify(delegate, never()).close(any(CloseStatus.class));
+
+        session.sendMessage(frame("/topic/lobby/1/messages", "more"));
+        session.sendMessage(frame("/topic/lobby/1/messages", "more"));
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+}
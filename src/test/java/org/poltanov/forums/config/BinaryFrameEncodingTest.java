@@ -0,0 +1,68 @@
+package org.poltanov.forums.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryFrameEncodingTest {
+
+    private static final byte[] JSON = ("{\"id\":42,\"text\":\"привет\",\"senderId\":7,\"senderNickname\":\"alice\","
+            + "\"lobbyId\":3,\"timestamp\":\"2024-05-01T12:30:15.123456\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final BinaryFrameEncoding encoding = new BinaryFrameEncoding();
+
+    private void connect(String sessionId, String requested) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(BinaryFrameEncoding.ENCODING_ATTRIBUTE, requested);
+        accessor.setSessionAttributes(attributes);
+        encoding.onConnect(new SessionConnectEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+    }
+
+    private static Message<?> event(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/lobby/3/messages");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(JSON, accessor.getMessageHeaders());
+    }
+
+    @Test
+    void transcodesOncePerEventForCborSessions() throws Exception {
+        connect("s1", BinaryFrameEncoding.CBOR);
+        connect("s2", BinaryFrameEncoding.CBOR);
+        connect("s3", BinaryFrameEncoding.JSON);
+
+        Message<?> first = encoding.preSend(event("s1"), null);
+        Message<?> second = encoding.preSend(event("s2"), null);
+        Message<?> json = encoding.preSend(event("s3"), null);
+
+        assertSame(JSON, json.getPayload());
+        assertSame(first.getPayload(), second.getPayload());
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM,
+                first.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+
+        byte[] cbor = (byte[]) first.getPayload();
+        assertTrue(cbor.length < JSON.length);
+        JsonNode decoded = new CBORMapper().readTree(cbor);
+        assertEquals("привет", decoded.get("text").asText());
+        assertTrue(decoded.get("timestamp").isIntegralNumber());
+    }
+}
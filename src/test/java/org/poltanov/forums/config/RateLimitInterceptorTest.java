@@ -0,0 +1,72 @@
+package org.poltanov.forums.config;
+
+import org.junit.jupiter.api.Test;
+import org.poltanov.forums.dto.SendRejectedMessage;
+import org.poltanov.forums.service.RateLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class RateLimitInterceptorTest {
+
+    private final RateLimiter rateLimiter = mock(RateLimiter.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final RateLimitInterceptor interceptor;
+
+    @SuppressWarnings("unchecked")
+    RateLimitInterceptorTest() {
+        ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(messagingTemplate);
+        interceptor = new RateLimitInterceptor(rateLimiter, provider);
+    }
+
+    private static Message<byte[]> send(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSessionId("s1");
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("userId", 7L);
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @Test
+    void throttledSendIsDroppedAndReportedToItsSession() {
+        when(rateLimiter.tryAcquire(RateLimiter.Limit.CHAT_SEND, 7L)).thenReturn(0L, 250L);
+        Message<byte[]> accepted = send("/app/chat.sendMessage");
+        Message<byte[]> throttled = send("/app/chat.sendMessage");
+
+        assertSame(accepted, interceptor.preSend(accepted, mock(MessageChannel.class)));
+        assertNull(interceptor.preSend(throttled, mock(MessageChannel.class)));
+
+        verify(messagingTemplate).convertAndSendToUser(eq("s1"), eq("/queue/errors"),
+                argThat((Object payload) -> payload instanceof SendRejectedMessage rejected
+                        && rejected.getRetryAfterMs() == 250
+                        && "/app/chat.sendMessage".equals(rejected.getDestination())),
+                argThat((Map<String, Object> headers) -> "s1".equals(headers.get(SimpMessageHeaderAccessor.SESSION_ID_HEADER))));
+    }
+
+    @Test
+    void otherDestinationsAreNotLimited() {
+        Message<byte[]> typing = send("/app/chat.typing");
+
+        assertSame(typing, interceptor.preSend(typing, mock(MessageChannel.class)));
+        verifyNoInteractions(rateLimiter, messagingTemplate);
+    }
+}
@@ -0,0 +1,187 @@
+package org.poltanov.forums.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.poltanov.forums.ForumsApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Два экземпляра приложения в режиме {@code chat.broker.mode=relay} с общим {@link StubStompBroker}:
+ * сообщение, отправленное на одном узле, доходит до подписчиков обоих узлов, а все адреса, которые видит брокер,
+ * допустимы для RabbitMQ.
+ */
+public class RelayModeTest {
+
+    private static final String PASSWORD = "relay-password";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final RestTemplate rest = new RestTemplate();
+
+    private static StubStompBroker broker;
+    private static EmbeddedPostgres postgres;
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void start() throws Exception {
+        broker = StubStompBroker.start();
+        postgres = EmbeddedPostgres.builder().start();
+        first = startNode();
+        second = startNode();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        for (AutoCloseable closeable : new AutoCloseable[]{second, first, postgres, broker}) {
+            if (closeable != null) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(ForumsApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework=WARN",
+                "--chat.broker.mode=relay",
+                "--chat.broker.relay.host=127.0.0.1",
+                "--chat.broker.relay.port=" + broker.getPort(),
+                "--chat.rate-limit.enabled=false");
+    }
+
+    private static URI url(ConfigurableApplicationContext node, String path) {
+        return URI.create("http://localhost:" + node.getEnvironment().getProperty("local.server.port") + path);
+    }
+
+    private static Login login(ConfigurableApplicationContext node, String username) throws Exception {
+        rest.postForEntity(url(node, "/auth/register"),
+                Map.of("username", username, "password", PASSWORD, "nickname", username), String.class);
+        String response = rest.postForObject(url(node, "/auth/login"),
+                Map.of("username", username, "password", PASSWORD), String.class);
+        String token = objectMapper.readTree(response).path("jwtToken").asText();
+        String claims = new String(Base64.getUrlDecoder().decode(token.split("\\.")[1]), StandardCharsets.UTF_8);
+        return new Login(token, objectMapper.readTree(claims).path("userId").asLong());
+    }
+
+    private static String post(ConfigurableApplicationContext node, String path, String token, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return rest.postForObject(url(node, path), new HttpEntity<>(body, headers), String.class);
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, Login login, String destination,
+                                        BlockingQueue<Delivery> deliveries) throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        URI ws = URI.create(url(node, "/ws/websocket?token=" + login.token()).toString().replace("http:", "ws:"));
+        StompSession session = client.connectAsync(ws, new WebSocketHttpHeaders(), new StompHeaders(),
+                new StompSessionHandlerAdapter() {
+                }).get(10, TimeUnit.SECONDS);
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                deliveries.add(new Delivery(headers.getDestination(), (byte[]) payload));
+            }
+        });
+        return session;
+    }
+
+    @Test
+    void messageSentOnOneNodeReachesSubscribersOfBothNodes() throws Exception {
+        Login alice = login(first, "relay-alice");
+        Login bob = login(second, "relay-bob");
+        long lobbyId = objectMapper.readTree(post(first, "/lobby/create", alice.token(), Map.of("name", "relay")))
+                .path("id").asLong();
+        post(second, "/lobby/" + lobbyId + "/join", bob.token(), null);
+
+        String destination = "/topic/lobby/" + lobbyId + "/messages";
+        BlockingQueue<Delivery> aliceDeliveries = new LinkedBlockingQueue<>();
+        BlockingQueue<Delivery> bobDeliveries = new LinkedBlockingQueue<>();
+        StompSession aliceSession = connect(first, alice, destination, aliceDeliveries);
+        StompSession bobSession = connect(second, bob, destination, bobDeliveries);
+        try {
+            String brokerDestination = "/topic/lobby." + lobbyId + ".messages";
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (broker.subscriptionCount(brokerDestination) < 2 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            assertEquals(2, broker.subscriptionCount(brokerDestination));
+
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination("/app/chat.sendMessage");
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            aliceSession.send(headers, objectMapper.writeValueAsBytes(
+                    Map.of("text", "hello from the first node", "senderId", alice.userId(), "lobbyId", lobbyId)));
+
+            for (BlockingQueue<Delivery> deliveries : List.of(aliceDeliveries, bobDeliveries)) {
+                Delivery delivery = deliveries.poll(10, TimeUnit.SECONDS);
+                assertNotNull(delivery);
+                assertEquals(destination, delivery.destination());
+                JsonNode message = objectMapper.readTree(delivery.payload());
+                assertEquals("hello from the first node", message.path("text").asText());
+                assertEquals(lobbyId, message.path("lobbyId").asLong());
+            }
+            assertTrue(aliceSession.isConnected() && bobSession.isConnected());
+            assertEquals(List.of(), broker.getRejectedDestinations());
+        } finally {
+            aliceSession.disconnect();
+            bobSession.disconnect();
+        }
+    }
+
+    @Test
+    void brokerDestinationsFollowRabbitMqRules() {
+        assertEquals("/topic/lobby.7.messages", RelayDestinations.toBroker("/topic/lobby/7/messages"));
+        assertEquals("/topic/lobbies", RelayDestinations.toBroker("/topic/lobbies"));
+        assertEquals("/topic/lobby/7/typing", RelayDestinations.fromBroker("/topic/lobby.7.typing"));
+        assertTrue(StubStompBroker.isValidRabbitDestination(RelayDestinations.toBroker("/topic/lobby/7/participants")));
+        assertFalse(StubStompBroker.isValidRabbitDestination("/topic/lobby/7/participants"));
+    }
+
+    private record Login(String token, long userId) {
+    }
+
+    private record Delivery(String destination, byte[] payload) {
+    }
+}
@@ -0,0 +1,79 @@
+package org.poltanov.forums.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ShardedLobbyBrokerTest {
+
+    private final BlockingQueue<Message<?>> delivered = new LinkedBlockingQueue<>();
+    private final ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+    private final ShardedLobbyBroker broker = new ShardedLobbyBroker(
+            new ExecutorSubscribableChannel(), outbound, new ExecutorSubscribableChannel(), 4, 100, false);
+
+    ShardedLobbyBrokerTest() {
+        outbound.subscribe(delivered::add);
+        broker.start();
+    }
+
+    @AfterEach
+    void stop() {
+        broker.stop();
+    }
+
+    private static Message<?> frame(SimpMessageType type, String destination, String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setDestination(destination);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> event(String destination, String body) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(body.getBytes(), accessor.getMessageHeaders());
+    }
+
+    @Test
+    void deliversOnlyToExactDestinationInPublishOrder() throws Exception {
+        broker.handleMessage(frame(SimpMessageType.SUBSCRIBE, "/topic/lobby/1/messages", "s1", "sub-0"));
+        broker.handleMessage(frame(SimpMessageType.SUBSCRIBE, "/topic/lobby/2/messages", "s2", "sub-0"));
+
+        for (String body : List.of("a", "b", "c")) {
+            broker.handleMessage(event("/topic/lobby/1/messages", body));
+        }
+
+        for (String expected : List.of("a", "b", "c")) {
+            Message<?> message = delivered.poll(5, TimeUnit.SECONDS);
+            assertEquals(expected, new String((byte[]) message.getPayload()));
+            assertEquals("s1", SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            assertEquals("sub-0", SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+        }
+        assertNull(delivered.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void disconnectRemovesAllSubscriptionsOfSession() throws Exception {
+        broker.handleMessage(frame(SimpMessageType.SUBSCRIBE, "/topic/lobby/1/messages", "s1", "sub-0"));
+        broker.handleMessage(frame(SimpMessageType.SUBSCRIBE, "/topic/lobby/1/participants", "s1", "sub-1"));
+        broker.handleMessage(frame(SimpMessageType.DISCONNECT, null, "s1", null));
+
+        broker.handleMessage(event("/topic/lobby/1/messages", "a"));
+        broker.handleMessage(event("/topic/lobby/1/participants", "b"));
+
+        assertNull(delivered.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
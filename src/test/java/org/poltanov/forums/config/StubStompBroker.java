@@ -0,0 +1,258 @@
+package org.poltanov.forums.config;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Минимальный STOMP 1.2 брокер для тестов режима {@code chat.broker.mode=relay}.
+ * <p>
+ * Поддерживает {@code CONNECT}, {@code SUBSCRIBE}, {@code UNSUBSCRIBE}, {@code SEND} и {@code DISCONNECT}
+ * и рассылает {@code SEND} всем подпискам с тем же адресом на всех соединениях. Адреса проверяются
+ * по правилам STOMP-плагина RabbitMQ: {@code /topic/<ключ>}, {@code /queue/<имя>}, {@code /amq/queue/<имя>},
+ * {@code /temp-queue/<имя>} и {@code /exchange/<обменник>[/<ключ>]}, где ключ и имя не пустые и не содержат
+ * {@code /}. Как и RabbitMQ, на недопустимый адрес брокер отвечает кадром {@code ERROR} и закрывает соединение.
+ * </p>
+ */
+class StubStompBroker implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<String> rejectedDestinations = new CopyOnWriteArrayList<>();
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private StubStompBroker(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    static StubStompBroker start() throws IOException {
+        StubStompBroker broker = new StubStompBroker(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+        Thread acceptor = new Thread(broker::accept, "stub-stomp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return broker;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    List<String> getRejectedDestinations() {
+        return List.copyOf(rejectedDestinations);
+    }
+
+    long subscriptionCount(String destination) {
+        return subscriptions.stream().filter(s -> s.destination.equals(destination)).count();
+    }
+
+    /**
+     * Проверяет адрес по правилам STOMP-плагина RabbitMQ.
+     *
+     * @param destination адрес кадра
+     * @return {@code true}, если RabbitMQ принял бы адрес
+     */
+    static boolean isValidRabbitDestination(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : List.of("/topic/", "/queue/", "/amq/queue/", "/temp-queue/")) {
+            if (destination.startsWith(prefix)) {
+                String name = destination.substring(prefix.length());
+                return !name.isEmpty() && name.indexOf('/') < 0;
+            }
+        }
+        if (destination.startsWith("/exchange/")) {
+            String[] parts = destination.substring("/exchange/".length()).split("/", -1);
+            return parts.length <= 2 && !parts[0].isEmpty();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread reader = new Thread(() -> serve(new Connection(socket)), "stub-stomp-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Connection connection) {
+        try (Socket socket = connection.socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            Frame frame;
+            while ((frame = Frame.read(in)) != null) {
+                if (!handle(connection, frame)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Соединение закрыто другой стороной.
+        } finally {
+            subscriptions.removeIf(s -> s.connection == connection);
+            connections.remove(connection.socket);
+        }
+    }
+
+    private boolean handle(Connection connection, Frame frame) throws IOException {
+        String destination = frame.headers.get("destination");
+        switch (frame.command) {
+            case "CONNECT", "STOMP" -> connection.write("CONNECTED",
+                    Map.of("version", "1.2", "heart-beat", "0,0", "server", "stub"), null);
+            case "SUBSCRIBE" -> {
+                if (!checkDestination(connection, destination)) {
+                    return false;
+                }
+                subscriptions.add(new Subscription(connection, frame.headers.get("id"), destination));
+            }
+            case "UNSUBSCRIBE" -> subscriptions.removeIf(s -> s.connection == connection
+                    && s.id.equals(frame.headers.get("id")));
+            case "SEND" -> {
+                if (!checkDestination(connection, destination)) {
+                    return false;
+                }
+                for (Subscription subscription : subscriptions) {
+                    if (subscription.destination.equals(destination)) {
+                        Map<String, String> headers = new LinkedHashMap<>();
+                        headers.put("subscription", subscription.id);
+                        headers.put("message-id", String.valueOf(messageIds.incrementAndGet()));
+                        headers.put("destination", destination);
+                        if (frame.headers.containsKey("content-type")) {
+                            headers.put("content-type", frame.headers.get("content-type"));
+                        }
+                        subscription.connection.write("MESSAGE", headers, frame.body);
+                    }
+                }
+            }
+            case "DISCONNECT" -> {
+                receipt(connection, frame);
+                return false;
+            }
+            default -> {
+            }
+        }
+        receipt(connection, frame);
+        return true;
+    }
+
+    private boolean checkDestination(Connection connection, String destination) throws IOException {
+        if (isValidRabbitDestination(destination)) {
+            return true;
+        }
+        rejectedDestinations.add(String.valueOf(destination));
+        connection.write("ERROR", Map.of("message", "Invalid destination", "content-type", "text/plain"),
+                ("'" + destination + "' is not a valid destination").getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    private static void receipt(Connection connection, Frame frame) throws IOException {
+        String receipt = frame.headers.get("receipt");
+        if (receipt != null) {
+            connection.write("RECEIPT", Map.of("receipt-id", receipt), null);
+        }
+    }
+
+    private record Subscription(Connection connection, String id, String destination) {
+    }
+
+    private static final class Connection {
+
+        private final Socket socket;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        synchronized void write(String command, Map<String, String> headers, byte[] body) throws IOException {
+            StringBuilder frame = new StringBuilder(command).append('\n');
+            headers.forEach((name, value) -> frame.append(name).append(':').append(value).append('\n'));
+            if (body != null) {
+                frame.append("content-length:").append(body.length).append('\n');
+            }
+            frame.append('\n');
+            OutputStream out = socket.getOutputStream();
+            out.write(frame.toString().getBytes(StandardCharsets.UTF_8));
+            if (body != null) {
+                out.write(body);
+            }
+            out.write(0);
+            out.flush();
+        }
+    }
+
+    private record Frame(String command, Map<String, String> headers, byte[] body) {
+
+        static Frame read(InputStream in) throws IOException {
+            String command;
+            do {
+                command = readLine(in);
+                if (command == null) {
+                    return null;
+                }
+            } while (command.isEmpty());
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                headers.putIfAbsent(line.substring(0, colon), unescape(line.substring(colon + 1)));
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            String contentLength = headers.get("content-length");
+            if (contentLength != null) {
+                body.write(in.readNBytes(Integer.parseInt(contentLength)));
+                in.read();
+            } else {
+                int b;
+                while ((b = in.read()) > 0) {
+                    body.write(b);
+                }
+            }
+            return new Frame(command, headers, body.toByteArray());
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    return null;
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+
+        private static String unescape(String value) {
+            return value.replace("\\c", ":").replace("\\n", "\n").replace("\\r", "\r").replace("\\\\", "\\");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.poltanov.forums.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class LobbyReaperTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final LobbyReaper reaper = new LobbyReaper(jdbcTemplate, 600_000, 2, 0);
+
+    @AfterEach
+    void stop() {
+        reaper.shutdown();
+    }
+
+    @Test
+    void purgesDataInBatchesBeforeLobbyRow() throws InterruptedException {
+        when(jdbcTemplate.update(eq(LobbyReaper.DELETE_MESSAGES_SQL), eq(1L), eq(1L), eq(2))).thenReturn(2, 2, 1);
+        when(jdbcTemplate.update(eq(LobbyReaper.DELETE_READ_CURSORS_SQL), eq(1L), eq(1L), eq(2))).thenReturn(0);
+        when(jdbcTemplate.update(eq(LobbyReaper.DELETE_MEMBERS_SQL), eq(1L), eq(1L), eq(2))).thenReturn(2, 0);
+
+        reaper.purge(1L);
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate, times(3)).update(LobbyReaper.DELETE_MESSAGES_SQL, 1L, 1L, 2);
+        order.verify(jdbcTemplate, times(1)).update(LobbyReaper.DELETE_READ_CURSORS_SQL, 1L, 1L, 2);
+        order.verify(jdbcTemplate, times(2)).update(LobbyReaper.DELETE_MEMBERS_SQL, 1L, 1L, 2);
+        order.verify(jdbcTemplate).update(LobbyReaper.DELETE_LOBBY_SQL, 1L);
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,107 @@
+package org.poltanov.forums.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LobbyTaskExecutorTest {
+
+    private final LobbyTaskExecutor executor = new LobbyTaskExecutor(4, 3, 2, false, 5_000, new SimpleMeterRegistry());
+
+    @AfterEach
+    void stop() {
+        executor.shutdown();
+    }
+
+    @Test
+    void runsTasksOfOneLobbyInOrder() throws Exception {
+        LobbyTaskExecutor unbounded = new LobbyTaskExecutor(4, 1000, 2, false, 5_000, new SimpleMeterRegistry());
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(200);
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            assertTrue(unbounded.execute(1L, () -> {
+                order.add(n);
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 200).boxed().toList(), order);
+        unbounded.shutdown();
+    }
+
+    @Test
+    void busyLobbyDoesNotBlockOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        executor.execute(2L, otherDone::countDown);
+
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void rejectsTasksBeyondLobbyQueueCapacity() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(executor.execute(1L, () -> { }));
+        }
+        assertFalse(executor.execute(1L, () -> { }));
+        assertTrue(executor.execute(2L, () -> { }));
+        assertEquals(3, executor.getMaxQueueDepth());
+        release.countDown();
+    }
+
+    @Test
+    void shutdownRunsAcceptedTasksAndRejectsNewOnes() {
+        LobbyTaskExecutor draining = new LobbyTaskExecutor(1, 1000, 2, false, 5_000, new SimpleMeterRegistry());
+        List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            assertTrue(draining.execute((long) (n % 3), () -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.add(n);
+            }));
+        }
+
+        draining.shutdown();
+
+        assertEquals(50, done.size());
+        assertFalse(draining.execute(1L, () -> { }));
+    }
+}
@@ -0,0 +1,101 @@
+package org.poltanov.forums.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.poltanov.forums.exception.LobbyNotFoundException;
+import org.poltanov.forums.model.Message;
+import org.poltanov.forums.util.MessageCodec;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MessageBatchWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final MessageCodec messageCodec = mock(MessageCodec.class);
+    private final MessageBatchWriter writer = new MessageBatchWriter(jdbcTemplate, transactionTemplate, messageCodec,
+            new ChatMetrics(new SimpleMeterRegistry(), false), "batched", 16, 50, 100);
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        writer.stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenActiveLobbies(Long... lobbyIds) throws Exception {
+        when(messageCodec.encode(anyString())).thenReturn(new byte[0]);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyInt())).thenAnswer(invocation ->
+                LongStream.rangeClosed(1, invocation.<Integer>getArgument(2)).boxed().toList());
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                .doInTransaction(mock(TransactionStatus.class))).when(transactionTemplate).execute(any());
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+                .thenReturn(List.of(lobbyIds));
+    }
+
+    @Test
+    void failedRowDoesNotFailRestOfBatch() throws Exception {
+        givenActiveLobbies(1L, 2L, 99L);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataIntegrityViolationException("lobby 99"));
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            // Аргументы: SQL, затем id, lobby_id, body, sender_id, timestamp и lobby_id для проверки лобби.
+            if (Long.valueOf(99L).equals(invocation.getArguments()[2])) {
+                throw new DataIntegrityViolationException("lobby 99");
+            }
+            return 1;
+        });
+        writer.start();
+
+        CompletableFuture<Message> first = writer.submit("a", 7L, 1L);
+        CompletableFuture<Message> bad = writer.submit("b", 7L, 99L);
+        CompletableFuture<Message> last = writer.submit("c", 7L, 2L);
+
+        assertEquals(List.of("a", "c"), List.of(first.get(5, TimeUnit.SECONDS).getText(),
+                last.get(5, TimeUnit.SECONDS).getText()));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, error.getCause());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void messageToDeletedLobbyIsRejected() throws Exception {
+        givenActiveLobbies(1L);
+        writer.start();
+
+        CompletableFuture<Message> kept = writer.submit("a", 7L, 1L);
+        CompletableFuture<Message> deleted = writer.submit("b", 7L, 5L);
+
+        assertEquals("a", kept.get(5, TimeUnit.SECONDS).getText());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> deleted.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LobbyNotFoundException.class, error.getCause());
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(List.of(1L), rows.getValue().stream().map(row -> row[1]).toList());
+    }
+}
@@ -0,0 +1,52 @@
+package org.poltanov.forums.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PostgresNotifyBackplaneTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PostgresNotifyBackplane backplane(int maxPayloadBytes) {
+        return new PostgresNotifyBackplane(null, null, null, null, null, null, objectMapper,
+                "postgres", "chat_events", "node-a", maxPayloadBytes, 256, 2, 100);
+    }
+
+    @Test
+    void packsEventsIntoPayloadsUnderTheLimitPreservingOrder() throws Exception {
+        PostgresNotifyBackplane backplane = backplane(1000);
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            events.add("{\"d\":\"/topic/lobby/1/messages\",\"b\":{\"id\":" + i + ",\"text\":\"сообщение\"}}");
+        }
+
+        List<String> payloads = backplane.pack(events);
+
+        assertTrue(payloads.size() > 1);
+        List<Integer> ids = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        for (String payload : payloads) {
+            assertTrue(payload.getBytes(StandardCharsets.UTF_8).length <= 1000);
+            JsonNode envelope = objectMapper.readTree(payload);
+            assertEquals("node-a", envelope.get("o").asText());
+            sequences.add(envelope.get("s").asLong());
+            for (JsonNode event : envelope.get("e")) {
+                ids.add(event.get("b").get("id").asInt());
+            }
+        }
+        assertEquals(40, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, ids.get(i));
+        }
+        assertNotEquals(sequences.get(0), sequences.get(1));
+    }
+}
@@ -0,0 +1,87 @@
+package org.poltanov.forums.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.poltanov.forums.dto.PresenceChangedMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PresenceRegistryTest {
+
+    private final ChatEventPublisher eventPublisher = mock(ChatEventPublisher.class);
+    private final PresenceRegistry registry = new PresenceRegistry(eventPublisher, 60_000);
+
+    @AfterEach
+    void stop() {
+        registry.shutdown();
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, long userId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("userId", userId);
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private void disconnect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        registry.onDisconnect(new SessionDisconnectEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), sessionId, CloseStatus.NORMAL));
+    }
+
+    @Test
+    void userStaysOnlineWhileAnySessionIsSubscribed() {
+        registry.onSubscribe(new SessionSubscribeEvent(this, subscribe("s1", 7L, "/topic/lobby/1/messages")));
+        registry.onSubscribe(new SessionSubscribeEvent(this, subscribe("s2", 7L, "/topic/lobby/1/messages")));
+        registry.onSubscribe(new SessionSubscribeEvent(this, subscribe("s3", 8L, "/topic/lobby/1/participants")));
+
+        disconnect("s1");
+        assertTrue(registry.isOnline(1L, 7L));
+        assertEquals(Set.of(7L), registry.getOnlineUsers(1L));
+
+        disconnect("s2");
+        assertFalse(registry.isOnline(1L, 7L));
+    }
+
+    @Test
+    void flushSendsNetChangesOnly() {
+        registry.onSubscribe(new SessionSubscribeEvent(this, subscribe("s1", 7L, "/topic/lobby/1/messages")));
+        registry.flush();
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publish(eq("/topic/lobby/1/participants"), event.capture());
+        assertEquals(List.of(7L), ((PresenceChangedMessage) event.getValue()).getOnline());
+
+        disconnect("s1");
+        registry.onSubscribe(new SessionSubscribeEvent(this, subscribe("s2", 7L, "/topic/lobby/1/messages")));
+        registry.flush();
+
+        verify(eventPublisher).publish(eq("/topic/lobby/1/participants"), any());
+        verify(eventPublisher, never()).publish(eq("/topic/lobby/2/participants"), any());
+    }
+}
@@ -0,0 +1,43 @@
+package org.poltanov.forums.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RateLimiter rateLimiter(boolean enabled) {
+        return new RateLimiter(enabled, 1, 3, 1, 1, 0, 1, 600_000, 1000, meterRegistry);
+    }
+
+    @Test
+    void acceptsBurstThenThrottles() {
+        RateLimiter limiter = rateLimiter(true);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(RateLimiter.Limit.CHAT_SEND, 7L));
+        }
+        long retryAfterMs = limiter.tryAcquire(RateLimiter.Limit.CHAT_SEND, 7L);
+        assertTrue(retryAfterMs > 0 && retryAfterMs <= 1000, "retryAfterMs=" + retryAfterMs);
+        assertEquals(1.0, meterRegistry.get("chat.rate-limit.throttled").tag("limit", "chat-send").counter().count());
+
+        assertEquals(0, limiter.tryAcquire(RateLimiter.Limit.CHAT_SEND, 8L));
+        assertEquals(0, limiter.tryAcquire(RateLimiter.Limit.MESSAGES_SEND, 7L));
+    }
+
+    @Test
+    void zeroRateAndDisabledLimiterAcceptEverything() {
+        RateLimiter limiter = rateLimiter(true);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire(RateLimiter.Limit.LOBBY_CREATE, 7L));
+        }
+
+        RateLimiter disabled = rateLimiter(false);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, disabled.tryAcquire(RateLimiter.Limit.CHAT_SEND, 7L));
+        }
+    }
+}
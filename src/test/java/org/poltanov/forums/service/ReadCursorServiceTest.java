@@ -0,0 +1,70 @@
+package org.poltanov.forums.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.poltanov.forums.dto.ChatMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ReadCursorServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ReadCursorService service = new ReadCursorService(jdbcTemplate, 3_600_000, 1000, 3_600_000);
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    private static ChatMessage message(long id, long senderId, long lobbyId) {
+        return new ChatMessage(id, "text", senderId, "user" + senderId, lobbyId, LocalDateTime.now());
+    }
+
+    @Test
+    void broadcastPathDoesNotQueryDatabase() {
+        service.onMessage(message(10, 1, 5));
+        service.onMessage(message(11, 2, 5));
+        service.markRead(3L, 5L, 11L);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void countsEachDeliveredMessageOnce() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(7L))).thenReturn(List.of(5L));
+        ResultSet counters = mock(ResultSet.class);
+        when(counters.getLong("lobby_id")).thenReturn(5L);
+        when(counters.getLong("total")).thenReturn(10L);
+        when(counters.getLong("last_id")).thenReturn(100L);
+        doAnswer(invocation -> {
+            // Счётчик лобби: 10 сообщений, последнее — 100. Курсора у пользователя нет.
+            if (invocation.<String>getArgument(0).contains("AS total")) {
+                invocation.<RowCallbackHandler>getArgument(2).processRow(counters);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        assertEquals(Map.of(5L, 10L), service.getUnreadCounts(7L));
+
+        for (long id : new long[]{103, 101, 102, 101, 99, 103}) {
+            service.onMessage(message(id, 2, 5));
+        }
+
+        assertEquals(Map.of(5L, 13L), service.getUnreadCounts(7L));
+    }
+}
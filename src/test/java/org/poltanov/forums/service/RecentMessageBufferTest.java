@@ -0,0 +1,69 @@
+package org.poltanov.forums.service;
+
+import org.junit.jupiter.api.Test;
+import org.poltanov.forums.dto.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecentMessageBufferTest {
+
+    private static ChatMessage message(long id) {
+        return new ChatMessage(id, "m" + id, 1L, "alice", 7L, LocalDateTime.now());
+    }
+
+    private static List<Long> ids(RecentMessageBuffer.Snapshot snapshot) {
+        return snapshot.messages().stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    void servesNothingUntilSeeded() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(4, 1 << 20, 60_000, true);
+        buffer.append(message(1));
+
+        assertNull(buffer.latest(7L, 2));
+    }
+
+    @Test
+    void seedKeepsMessagesBroadcastAfterTheDatabaseRead() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(4, 1 << 20, 60_000, true);
+        buffer.append(message(5));
+        buffer.seed(7L, List.of(message(3), message(4)), false);
+        buffer.append(message(6));
+
+        RecentMessageBuffer.Snapshot page = buffer.latest(7L, 3);
+        assertEquals(List.of(4L, 5L, 6L), ids(page));
+        assertTrue(page.hasMore());
+        assertNull(buffer.latest(7L, 4));
+    }
+
+    @Test
+    void outOfOrderMessagesAreSortedAndOldestEvicted() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(3, 1 << 20, 60_000, true);
+        buffer.seed(7L, List.of(), true);
+        buffer.append(message(2));
+        buffer.append(message(1));
+        buffer.append(message(4));
+        buffer.append(message(3));
+
+        RecentMessageBuffer.Snapshot page = buffer.latest(7L, 2);
+        assertEquals(List.of(3L, 4L), ids(page));
+        assertTrue(page.hasMore());
+        assertNull(buffer.latest(7L, 3));
+    }
+
+    @Test
+    void completeHistoryIsServedEvenWhenShorterThanPage() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(4, 1 << 20, 60_000, true);
+        buffer.seed(7L, List.of(message(1), message(2)), true);
+
+        RecentMessageBuffer.Snapshot page = buffer.latest(7L, 50);
+        assertEquals(List.of(1L, 2L), ids(page));
+        assertFalse(page.hasMore());
+    }
+}
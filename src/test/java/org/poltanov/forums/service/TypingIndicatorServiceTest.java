@@ -0,0 +1,84 @@
+package org.poltanov.forums.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.poltanov.forums.dto.LobbyUsers;
+import org.poltanov.forums.dto.TypingMessage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TypingIndicatorServiceTest {
+
+    private final ChatEventPublisher eventPublisher = mock(ChatEventPublisher.class);
+    private final UserProfileCache userProfileCache = mock(UserProfileCache.class);
+    private final TypingIndicatorService typing =
+            new TypingIndicatorService(eventPublisher, userProfileCache, 60_000, 600_000);
+
+    TypingIndicatorServiceTest() {
+        when(userProfileCache.getNicknames(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().collect(Collectors.toMap(id -> id, id -> "user" + id));
+        });
+    }
+
+    @AfterEach
+    void stop() {
+        typing.shutdown();
+    }
+
+    @Test
+    void aggregatesTypersIntoOneFramePerTick() {
+        typing.ping(1L, 7L);
+        typing.ping(1L, 7L);
+        typing.ping(1L, 8L);
+        typing.advance();
+
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(1)).publishTransient(eq("/topic/lobby/1/typing"), frame.capture());
+        List<LobbyUsers> users = ((TypingMessage) frame.getValue()).getUsers();
+        assertEquals(Set.of(7L, 8L), Set.copyOf(users.stream().map(LobbyUsers::getUserId).toList()));
+
+        reset(eventPublisher);
+        typing.ping(1L, 7L);
+        typing.advance();
+        verify(eventPublisher, never()).publishTransient(any(), any());
+    }
+
+    @Test
+    void typersExpireAfterTtlTicks() {
+        TypingIndicatorService typing = new TypingIndicatorService(eventPublisher, userProfileCache, 60_000, 120_000);
+        typing.ping(1L, 7L);
+        typing.advance();
+        assertEquals(Set.of(7L), typing.getTypingUsers(1L));
+
+        typing.advance();
+        typing.shutdown();
+        assertEquals(Set.of(), typing.getTypingUsers(1L));
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishTransient(eq("/topic/lobby/1/typing"), frame.capture());
+        assertEquals(List.of(), ((TypingMessage) frame.getValue()).getUsers());
+    }
+
+    @Test
+    void stopRemovesTyperImmediately() {
+        typing.ping(1L, 7L);
+        typing.stop(1L, 7L);
+
+        assertEquals(Set.of(), typing.getTypingUsers(1L));
+    }
+}
@@ -0,0 +1,56 @@
+package org.poltanov.forums.service;
+
+import org.junit.jupiter.api.Test;
+import org.poltanov.forums.model.User;
+import org.poltanov.forums.repository.UserRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserProfileCacheTest {
+
+    private static User user(long id, String nickname) {
+        User user = new User();
+        user.setId(id);
+        user.setNickname(nickname);
+        return user;
+    }
+
+    @Test
+    void batchLookupLoadsMissesOnceAndCachesThem() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(user(1, "alice"), user(2, "bob")));
+        UserProfileCache cache = new UserProfileCache(userRepository, 100, 60_000);
+
+        Map<Long, String> first = cache.getNicknames(List.of(1L, 2L, 3L));
+        Map<Long, String> second = cache.getNicknames(List.of(1L, 2L));
+
+        assertEquals("alice", first.get(1L));
+        assertEquals("bob", first.get(2L));
+        assertEquals(UserProfileCache.UNKNOWN_NICKNAME, first.get(3L));
+        assertEquals(Map.of(1L, "alice", 2L, "bob"), second);
+        verify(userRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void invalidateReloadsNickname() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(1L))
+                .thenReturn(Optional.of(user(1, "old")))
+                .thenReturn(Optional.of(user(1, "new")));
+        UserProfileCache cache = new UserProfileCache(userRepository, 100, 60_000);
+
+        assertEquals("old", cache.getNickname(1L));
+        assertEquals("old", cache.getNickname(1L));
+        cache.invalidate(1L);
+        assertEquals("new", cache.getNickname(1L));
+    }
+}
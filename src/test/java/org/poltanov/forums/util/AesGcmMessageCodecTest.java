@@ -0,0 +1,44 @@
+package org.poltanov.forums.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AesGcmMessageCodecTest {
+
+    private final AesGcmMessageCodec codec = new AesGcmMessageCodec("MySuperSecretKey");
+
+    @Test
+    void roundTripUsesFreshIvPerMessage() throws Exception {
+        byte[] first = codec.encode("Привет, мир");
+        byte[] second = codec.encode("Привет, мир");
+
+        assertEquals("Привет, мир", codec.decode(first));
+        assertEquals(AesGcmMessageCodec.FORMAT_VERSION, first[0]);
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() throws Exception {
+        byte[] payload = codec.encode("hello");
+        payload[payload.length - 1] ^= 1;
+
+        assertThrows(GeneralSecurityException.class, () -> codec.decode(payload));
+        assertNull(codec.decodeAll(List.of(payload)).get(0));
+    }
+
+    @Test
+    void legacyCodecReadsOldRows() throws Exception {
+        LegacyAesMessageCodec legacy = new LegacyAesMessageCodec("MySuperSecretKey");
+        String stored = new String(legacy.encode("старое сообщение"));
+
+        assertEquals("старое сообщение", legacy.decodeText(stored));
+    }
+}